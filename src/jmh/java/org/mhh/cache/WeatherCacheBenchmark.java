@@ -0,0 +1,170 @@
+package org.mhh.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mhh.cluster.ClusterCacheResolver;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.config.CacheConfiguration;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.CitySuggestionDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.service.WeatherService;
+import org.mhh.upstream.UpstreamPriority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache-key computation, gazetteer prefix lookups and the weatherCache hit path through the Spring cache abstraction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherCacheBenchmark {
+
+    private static final String CITY = "Tehran";
+
+    private final Expression keyExpression = new SpelExpressionParser().parseExpression("#city.toLowerCase()");
+    private AnnotationConfigApplicationContext context;
+    private Cache weatherCache;
+    private WeatherService cachedService;
+    private CityKeyGenerator cityKeys;
+    private CityGazetteer gazetteer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(CachingContext.class);
+        weatherCache = context.getBean(CacheManager.class).getCache(CacheConfiguration.WEATHER_CACHE);
+        cachedService = context.getBean(WeatherService.class);
+        cityKeys = context.getBean(CityKeyGenerator.class);
+        gazetteer = context.getBean(CityGazetteer.class);
+        cachedService.getWeatherData(CITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String cacheKey_spel() {
+        StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+        evaluationContext.setVariable("city", CITY);
+        return keyExpression.getValue(evaluationContext, String.class);
+    }
+
+    @Benchmark
+    public String cacheKey_keyGenerator() {
+        return cityKeys.keyFor(CITY);
+    }
+
+    @Benchmark
+    public String cacheKey_keyGeneratorUntrimmedAlias() {
+        return cityKeys.keyFor(" TEHERAN,");
+    }
+
+    @Benchmark
+    public List<CitySuggestionDTO> gazetteer_prefix() {
+        return gazetteer.findByPrefix("sa", 10);
+    }
+
+    @Benchmark
+    public WeatherResponseDTO cacheHit_springCache() {
+        return weatherCache.get(cityKeys.keyFor(CITY), WeatherResponseDTO.class);
+    }
+
+    @Benchmark
+    public WeatherResponseDTO cacheHit_cacheableProxy() {
+        return cachedService.getWeatherData(CITY);
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingContext {
+
+        @Bean
+        CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(CacheConfiguration.WEATHER_CACHE);
+            cacheManager.setCacheSpecification("maximumSize=500,expireAfterWrite=10m");
+            return cacheManager;
+        }
+
+        @Bean
+        CityGazetteer cityGazetteer() {
+            return new CityGazetteer(new ClassPathResource("cities.tsv"));
+        }
+
+        @Bean
+        CityKeyGenerator cityKeyGenerator(CityGazetteer cityGazetteer) {
+            return new CityKeyGenerator(cityGazetteer);
+        }
+
+        @Bean
+        WeatherCacheAccess weatherCacheAccess(CacheManager cacheManager, CityKeyGenerator cityKeyGenerator) {
+            return new WeatherCacheAccess(cacheManager, cityKeyGenerator);
+        }
+
+        @Bean
+        ClusterRouting clusterRouting(CityKeyGenerator cityKeyGenerator, WeatherCacheAccess weatherCacheAccess) {
+            // cluster mode off, as in a single-instance deployment
+            return new ClusterRouting(null, cityKeyGenerator, weatherCacheAccess, new SimpleMeterRegistry(), new ServingThreads(false),
+                    false, "", "", "", "", 128, 100, Duration.ofSeconds(30), Duration.ofMinutes(10));
+        }
+
+        @Bean
+        ClusterCacheResolver clusterCacheResolver(CacheManager cacheManager, ClusterRouting clusterRouting) {
+            return new ClusterCacheResolver(cacheManager, clusterRouting);
+        }
+
+        @Bean
+        WeatherService weatherService() {
+            return new FixedWeatherService();
+        }
+    }
+
+    /**
+     * Mirrors the {@code @Cacheable} declaration of WeatherServiceImpl with a constant upstream.
+     */
+    static class FixedWeatherService implements WeatherService {
+
+        @Override
+        @Cacheable(value = "weatherCache", keyGenerator = "cityKeyGenerator", cacheResolver = "clusterCacheResolver", sync = true)
+        public WeatherResponseDTO getWeatherData(String city) {
+            return fetchWeatherData(city, UpstreamPriority.INTERACTIVE);
+        }
+
+        @Override
+        public WeatherResponseDTO fetchWeatherData(String city, UpstreamPriority priority) {
+            return new WeatherResponseDTO(city, 21.5, "clear sky", 30, 3.2, Instant.now(), false);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.mhh.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.mhh.controller.PreEncodedWeatherHttpMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a cached {@link WeatherResponseDTO} on the hit path, per response format: JSON, CBOR and Smile with
+ * ObjectMappers configured like Spring Boot's, and the pre-encoded converter's lookup of already-encoded bytes.
+ * Run with {@code -prof gc} to compare allocation per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
+    private PreEncodedWeatherHttpMessageConverter preEncoded;
+    private WeatherResponseDTO weatherResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        smileMapper = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        preEncoded = new PreEncodedWeatherHttpMessageConverter(objectMapper, Jackson2ObjectMapperBuilder.json(), 500);
+        weatherResponse = new WeatherResponseDTO("London", 15.5, "broken clouds", 75, 4.1,
+                Instant.parse("2026-03-15T12:00:00Z"), false);
+    }
+
+    @Benchmark
+    public byte[] serializeToBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(weatherResponse);
+    }
+
+    @Benchmark
+    public String serializeToString() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(weatherResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeToCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(weatherResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeToSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(weatherResponse);
+    }
+
+    @Benchmark
+    public byte[] preEncodedJson() {
+        return preEncoded.encode(weatherResponse, MediaType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public byte[] preEncodedCbor() {
+        return preEncoded.encode(weatherResponse, MediaType.APPLICATION_CBOR);
+    }
+}
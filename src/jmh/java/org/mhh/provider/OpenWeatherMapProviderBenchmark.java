@@ -0,0 +1,87 @@
+package org.mhh.provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mhh.dto.WeatherResponseDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upstream request building and response decoding in {@link OpenWeatherMapProvider}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenWeatherMapProviderBenchmark {
+
+    // a typical /data/2.5/weather response
+    static final String CURRENT_WEATHER = """
+            {"coord":{"lon":-0.1257,"lat":51.5085},
+             "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04n"}],
+             "base":"stations",
+             "main":{"temp":15.5,"feels_like":14.8,"temp_min":14.0,"temp_max":16.5,"pressure":1012,"humidity":75,
+                     "sea_level":1012,"grnd_level":1008},
+             "visibility":10000,"wind":{"speed":4.1,"deg":240,"gust":7.2},"clouds":{"all":75},"dt":1678886400,
+             "sys":{"type":1,"id":1414,"country":"GB","sunrise":1678857600,"sunset":1678900800},
+             "timezone":0,"id":2643743,"name":"London","cod":200}
+            """;
+
+    // a stormy response with several weather conditions and precipitation blocks
+    static final String STORMY_WEATHER = """
+            {"coord":{"lon":51.4215,"lat":35.6944},
+             "weather":[{"id":502,"main":"Rain","description":"heavy intensity rain","icon":"10d"},
+                        {"id":211,"main":"Thunderstorm","description":"thunderstorm","icon":"11d"},
+                        {"id":701,"main":"Mist","description":"mist","icon":"50d"}],
+             "base":"stations",
+             "main":{"temp":9.8,"feels_like":6.1,"temp_min":8.9,"temp_max":10.7,"pressure":1003,"humidity":93,
+                     "sea_level":1003,"grnd_level":870},
+             "visibility":3200,"wind":{"speed":11.3,"deg":200,"gust":19.5},
+             "rain":{"1h":6.45,"3h":14.2},"snow":{"1h":0.0},"clouds":{"all":100},"dt":1678886400,
+             "sys":{"type":2,"id":47737,"country":"IR","sunrise":1678849567,"sunset":1678892612},
+             "timezone":12600,"id":112931,"name":"Tehran","cod":200}
+            """;
+
+    private OpenWeatherMapProvider provider;
+    private byte[] currentWeather;
+    private byte[] stormyWeather;
+
+    @Setup
+    public void setUp() {
+        provider = new OpenWeatherMapProvider("primary", new RestTemplate(), new ObjectMapper(), new SimpleMeterRegistry(),
+                "https://api.openweathermap.org/data/2.5/weather", "0123456789abcdef0123456789abcdef", "metric");
+        currentWeather = CURRENT_WEATHER.getBytes(StandardCharsets.UTF_8);
+        stormyWeather = STORMY_WEATHER.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public WeatherResponseDTO mapJsonToDto_currentWeather() throws IOException {
+        return provider.mapJsonToDto(new ByteArrayInputStream(currentWeather), "London");
+    }
+
+    @Benchmark
+    public WeatherResponseDTO mapJsonToDto_stormyWeather() throws IOException {
+        return provider.mapJsonToDto(new ByteArrayInputStream(stormyWeather), "Tehran");
+    }
+
+    @Benchmark
+    public String buildUrl() {
+        return provider.buildUrl("San Francisco");
+    }
+}
@@ -0,0 +1,48 @@
+package org.mhh.loadtest;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Chooses the city of the next request.
+ */
+interface CityPicker {
+
+    String next(SplittableRandom random);
+
+    /**
+     * Zipf-distributed ranks over {@code cities}: rank {@code k} is requested in proportion to {@code 1 / k^s}, so
+     * a few hot cities take most of the traffic.
+     */
+    static CityPicker zipf(List<String> cities, double exponent) {
+        double[] cumulative = new double[cities.size()];
+        double total = 0;
+        for (int rank = 0; rank < cities.size(); rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        double sum = total;
+        return random -> {
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return cities.get(low);
+        };
+    }
+
+    /**
+     * Uniform over {@code size} synthetic city names, far more than fit in weatherCache: nearly every request
+     * is a miss.
+     */
+    static CityPicker longTail(int size) {
+        return random -> "Loadtown " + random.nextInt(size);
+    }
+}
@@ -0,0 +1,221 @@
+package org.mhh.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load: {@code concurrency} workers each send {@code GET /api/weather?city=...} as soon as their
+ * previous response arrived, for the scenario's phases in turn. Latency is measured from send to the last byte
+ * of the response and recorded in the phase the request was sent in; a phase is only summarized once its
+ * requests still in flight have finished. Every worker draws its cities from its own seeded random, so a run
+ * requests the same cities in the same order per worker every time.
+ * <p>
+ * Being closed-loop, a slow response also holds back the worker's next request, and the requests an open
+ * stream of clients would have sent meanwhile are never measured (coordinated omission). p99 and p999 therefore
+ * understate what clients see while the service is slow; compare them between runs rather than as absolutes.
+ */
+class LoadDriver {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final HttpClient client;
+    private final URI endpoint;
+    private final int concurrency;
+    private final long seed;
+    private final Duration requestTimeout;
+
+    LoadDriver(String baseUrl, int concurrency, long seed, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.endpoint = URI.create(baseUrl + "/api/weather");
+        this.concurrency = concurrency;
+        this.seed = seed;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Runs the scenario for {@code warmup} without recording (so hot keys are cached as in steady state),
+     * then for {@code duration} split into its phases.
+     */
+    List<PhaseResult> run(Scenario scenario, StubUpstream upstream, Duration warmup, Duration duration)
+            throws InterruptedException {
+        // collects the responses that are not measured: warm-up, and requests sent between phases
+        PhaseResult unmeasured = new PhaseResult("unmeasured");
+        List<PhaseResult> results = new ArrayList<>();
+        Worker[] workers = new Worker[concurrency];
+        Thread[] threads = new Thread[concurrency];
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers[i] = new Worker(scenario.cities(), new SplittableRandom(seed + i), unmeasured, done);
+            threads[i] = new Thread(workers[i], "load-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        try {
+            scenario.phases().get(0).setUp().accept(upstream);
+            Thread.sleep(warmup.toMillis());
+            for (Scenario.Phase phase : scenario.phases()) {
+                phase.setUp().accept(upstream);
+                upstream.resetCalls();
+                PhaseResult result = new PhaseResult(phase.name());
+                result.start();
+                switchTo(workers, result);
+                Thread.sleep((long) (duration.toMillis() * phase.fraction()));
+                switchTo(workers, unmeasured);
+                result.stop();
+                result.awaitInFlight(requestTimeout);
+                result.summarize(upstream.calls());
+                results.add(result);
+            }
+        } finally {
+            for (Worker worker : workers) {
+                worker.running = false;
+            }
+            done.await(requestTimeout.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        }
+        return results;
+    }
+
+    private static void switchTo(Worker[] workers, PhaseResult result) {
+        for (Worker worker : workers) {
+            worker.result = result;
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final CityPicker cities;
+        private final SplittableRandom random;
+        private final CountDownLatch done;
+        private volatile PhaseResult result;
+        private volatile boolean running = true;
+
+        private Worker(CityPicker cities, SplittableRandom random, PhaseResult result, CountDownLatch done) {
+            this.cities = cities;
+            this.random = random;
+            this.result = result;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    HttpRequest request = HttpRequest.newBuilder(
+                                    URI.create(endpoint + "?city=" + URLEncoder.encode(cities.next(random), StandardCharsets.UTF_8)))
+                            .timeout(requestTimeout)
+                            .GET()
+                            .build();
+                    PhaseResult phase = result;
+                    phase.sent();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        phase.record(response.statusCode(), System.nanoTime() - start);
+                    } catch (IOException e) {
+                        phase.record(0, System.nanoTime() - start);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Latencies and response codes of one phase, and the upstream calls made during it.
+     */
+    static final class PhaseResult {
+
+        private final String name;
+        private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+        // index: status / 100, 0 for I/O errors and timeouts
+        private final LongAdder[] statuses = new LongAdder[6];
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private long startNanos;
+        private long elapsedNanos;
+        private Histogram histogram;
+        private Map<String, Long> upstreamCalls;
+
+        private PhaseResult(String name) {
+            this.name = name;
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = new LongAdder();
+            }
+        }
+
+        private void start() {
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Ends the phase's sending window, which throughput is computed over.
+         */
+        private void stop() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        private void awaitInFlight(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+
+        private void summarize(Map<String, Long> upstreamCalls) {
+            histogram = latencies.getIntervalHistogram();
+            this.upstreamCalls = upstreamCalls;
+        }
+
+        private void sent() {
+            inFlight.incrementAndGet();
+        }
+
+        private void record(int status, long nanos) {
+            statuses[Math.min(status / 100, statuses.length - 1)].increment();
+            latencies.recordValue(Math.min(nanos, MAX_LATENCY_NANOS));
+            inFlight.decrementAndGet();
+        }
+
+        String name() {
+            return name;
+        }
+
+        Histogram latencies() {
+            return histogram;
+        }
+
+        long count(int statusClass) {
+            return statuses[statusClass].sum();
+        }
+
+        Duration elapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        Map<String, Long> upstreamCalls() {
+            return upstreamCalls;
+        }
+    }
+}
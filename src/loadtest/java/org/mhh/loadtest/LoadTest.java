@@ -0,0 +1,164 @@
+package org.mhh.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.mhh.WeatherForecastServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline load test: starts a {@link StubUpstream} and the service pointed at it in this JVM, runs each scenario
+ * against {@code /api/weather} with a {@link LoadDriver}, and prints throughput, latency percentiles and upstream
+ * calls per phase. Every scenario gets a fresh service, so caches start empty.
+ * <p>
+ * Options are {@code --name=value}; see {@link #DEFAULTS}. Any other {@code --property=value} is passed to the
+ * service, e.g. {@code --weather.cache.adaptive-ttl.enabled=true}.
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("scenarios", "hot-keys,cold-tail,upstream-outage");
+        DEFAULTS.put("duration", "30s");
+        DEFAULTS.put("warmup", "5s");
+        DEFAULTS.put("concurrency", "32");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("request-timeout", "10s");
+        // hot-keys and upstream-outage: Zipf over the gazetteer cities, padded with synthetic ones
+        DEFAULTS.put("cities", "1000");
+        DEFAULTS.put("zipf-exponent", "1.1");
+        // cold-tail: uniform over this many synthetic cities
+        DEFAULTS.put("tail-cities", "1000000");
+        DEFAULTS.put("upstream.latency-median", "50ms");
+        DEFAULTS.put("upstream.latency-p99", "300ms");
+        DEFAULTS.put("upstream.error-rate", "0.01");
+        DEFAULTS.put("upstream.not-found-rate", "0.005");
+        DEFAULTS.put("upstream.rate-limited-rate", "0.001");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        Map<String, String> serviceProperties = new LinkedHashMap<>();
+        serviceProperties.put("server.port", "0");
+        serviceProperties.put("spring.main.banner-mode", "off");
+        serviceProperties.put("logging.level.root", "WARN");
+        serviceProperties.put("logging.level.org.mhh", "OFF");
+        // the stub has no request quota; the service's own limiter would otherwise cap every run at 60 calls/min
+        serviceProperties.put("weather.upstream.rate-limit.calls-per-minute", "60000000");
+        serviceProperties.put("weather.upstream.rate-limit.burst", "100000");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            (DEFAULTS.containsKey(name) ? options : serviceProperties).put(name, value);
+        }
+
+        List<String> hotCities = hotCities(Integer.parseInt(options.get("cities")));
+        double exponent = Double.parseDouble(options.get("zipf-exponent"));
+        Settings settings = new Settings(options);
+        System.out.printf(Locale.ROOT, "Load test: %s, %d workers, %s warm-up + %s per scenario, seed %d%n",
+                options.get("scenarios"), settings.concurrency, settings.warmup, settings.duration, settings.seed);
+        System.out.printf(Locale.ROOT, "Stub upstream: latency median %s / p99 %s, errors %s, 404 %s, 429 %s%n%n",
+                options.get("upstream.latency-median"), options.get("upstream.latency-p99"), options.get("upstream.error-rate"),
+                options.get("upstream.not-found-rate"), options.get("upstream.rate-limited-rate"));
+
+        for (String name : options.get("scenarios").split(",")) {
+            Scenario scenario = switch (name.trim()) {
+                case "hot-keys" -> Scenario.hotKeys(hotCities, exponent);
+                case "cold-tail" -> Scenario.coldTail(Integer.parseInt(options.get("tail-cities")));
+                case "upstream-outage" -> Scenario.upstreamOutage(hotCities, exponent);
+                default -> throw new IllegalArgumentException("Unknown scenario " + name);
+            };
+            try (StubUpstream upstream = new StubUpstream(parseDuration(options, "upstream.latency-median"),
+                    parseDuration(options, "upstream.latency-p99"), Double.parseDouble(options.get("upstream.error-rate")),
+                    Double.parseDouble(options.get("upstream.not-found-rate")),
+                    Double.parseDouble(options.get("upstream.rate-limited-rate")))) {
+                serviceProperties.put("openweathermap.api.url", upstream.url());
+                serviceProperties.put("openweathermap.api.key", "loadtest");
+                try (ConfigurableApplicationContext service = new SpringApplicationBuilder(WeatherForecastServiceApplication.class)
+                        .run(toArgs(serviceProperties))) {
+                    String baseUrl = "http://127.0.0.1:" + service.getEnvironment().getProperty("local.server.port");
+                    LoadDriver driver = new LoadDriver(baseUrl, settings.concurrency, settings.seed, settings.requestTimeout);
+                    report(scenario, driver.run(scenario, upstream, settings.warmup, settings.duration));
+                }
+            }
+        }
+    }
+
+    private static void report(Scenario scenario, List<LoadDriver.PhaseResult> results) {
+        System.out.println("== " + scenario.name());
+        System.out.printf(Locale.ROOT, "%-8s %9s %9s %8s %8s %8s %6s %9s %9s %9s %9s  %s%n", "phase", "requests", "req/s",
+                "2xx", "4xx", "5xx", "io", "p50 ms", "p99 ms", "p999 ms", "max ms", "upstream calls");
+        for (LoadDriver.PhaseResult result : results) {
+            Histogram latencies = result.latencies();
+            long requests = latencies.getTotalCount();
+            long upstreamCalls = result.upstreamCalls().values().stream().mapToLong(Long::longValue).sum();
+            System.out.printf(Locale.ROOT, "%-8s %9d %9.0f %8d %8d %8d %6d %9.2f %9.2f %9.2f %9.2f  %d %s%n",
+                    result.name(), requests, requests / (result.elapsed().toNanos() / 1e9),
+                    result.count(2), result.count(4), result.count(5), result.count(0),
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()),
+                    upstreamCalls, result.upstreamCalls());
+        }
+        System.out.println();
+    }
+
+    /**
+     * The gazetteer cities in file order, then {@code Loadtown hot N} up to {@code count}.
+     */
+    private static List<String> hotCities(int count) throws IOException {
+        List<String> cities = new ArrayList<>(count);
+        try (InputStream in = LoadTest.class.getResourceAsStream("/cities.tsv");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && cities.size() < count) {
+                String[] columns = line.split("\t");
+                if (!line.startsWith("#") && columns.length > 1) {
+                    cities.add(columns[1]);
+                }
+            }
+        }
+        while (cities.size() < count) {
+            cities.add("Loadtown hot " + cities.size());
+        }
+        return cities;
+    }
+
+    private static String[] toArgs(Map<String, String> properties) {
+        return properties.entrySet().stream().map(entry -> "--" + entry.getKey() + "=" + entry.getValue()).toArray(String[]::new);
+    }
+
+    private static Duration parseDuration(Map<String, String> options, String name) {
+        return DurationStyle.detectAndParse(options.get(name));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private record Settings(int concurrency, long seed, Duration warmup, Duration duration, Duration requestTimeout) {
+
+        private Settings(Map<String, String> options) {
+            this(Integer.parseInt(options.get("concurrency")), Long.parseLong(options.get("seed")),
+                    parseDuration(options, "warmup"), parseDuration(options, "duration"), parseDuration(options, "request-timeout"));
+        }
+    }
+}
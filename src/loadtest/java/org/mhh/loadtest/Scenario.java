@@ -0,0 +1,37 @@
+package org.mhh.loadtest;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A named load pattern: which cities are requested, and how the stub upstream behaves in each phase of the run.
+ */
+record Scenario(String name, CityPicker cities, List<Phase> phases) {
+
+    /**
+     * A part of the run, as a fraction of its duration, with the stub upstream configured by {@code setUp}.
+     */
+    record Phase(String name, double fraction, Consumer<StubUpstream> setUp) {
+    }
+
+    static Scenario hotKeys(List<String> cities, double exponent) {
+        return new Scenario("hot-keys", CityPicker.zipf(cities, exponent),
+                List.of(new Phase("steady", 1, upstream -> upstream.setOutage(false))));
+    }
+
+    static Scenario coldTail(int size) {
+        return new Scenario("cold-tail", CityPicker.longTail(size),
+                List.of(new Phase("steady", 1, upstream -> upstream.setOutage(false))));
+    }
+
+    /**
+     * Hot-key traffic while the upstream is healthy, fails every call for the middle third of the run, and
+     * recovers.
+     */
+    static Scenario upstreamOutage(List<String> cities, double exponent) {
+        return new Scenario("upstream-outage", CityPicker.zipf(cities, exponent), List.of(
+                new Phase("before", 1 / 3.0, upstream -> upstream.setOutage(false)),
+                new Phase("outage", 1 / 3.0, upstream -> upstream.setOutage(true)),
+                new Phase("after", 1 / 3.0, upstream -> upstream.setOutage(false))));
+    }
+}
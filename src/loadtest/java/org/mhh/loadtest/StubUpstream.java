@@ -0,0 +1,181 @@
+package org.mhh.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for OpenWeatherMap's {@code /data/2.5/weather} on localhost, so the service can be loaded without a
+ * network or an API key.
+ * <p>
+ * Every call waits for a log-normally distributed latency with the configured median and p99, then answers with
+ * a realistic payload, or with a 404, 429 or 500 at the configured rates. Cities whose name starts with
+ * {@code Nowhere} are always unknown. {@link #setOutage(boolean)} makes every call fail with 503 until it is
+ * switched off again. Calls are counted by outcome.
+ */
+class StubUpstream implements AutoCloseable {
+
+    static final String PATH = "/data/2.5/weather";
+    private static final double Z_99 = 2.326;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final double latencyMu;
+    private final double latencySigma;
+    private final double errorRate;
+    private final double notFoundRate;
+    private final double rateLimitedRate;
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private volatile boolean outage;
+
+    StubUpstream(Duration medianLatency, Duration p99Latency, double errorRate, double notFoundRate,
+                 double rateLimitedRate) throws IOException {
+        double median = Math.max(1, medianLatency.toNanos());
+        this.latencyMu = Math.log(median);
+        this.latencySigma = Math.max(0, Math.log(Math.max(median, p99Latency.toNanos()) / median) / Z_99);
+        this.errorRate = errorRate;
+        this.notFoundRate = notFoundRate;
+        this.rateLimitedRate = rateLimitedRate;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-upstream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // headers and body are written separately; without TCP_NODELAY the body waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        // the default keeps at most 200 idle keep-alive connections and closes the rest, which a client with a
+        // bigger pool only notices as NoHttpResponseException on its next request
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "100000");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    void setOutage(boolean outage) {
+        this.outage = outage;
+    }
+
+    /**
+     * Calls answered so far, by outcome.
+     */
+    Map<String, Long> calls() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        calls.forEach((outcome, count) -> snapshot.put(outcome, count.sum()));
+        return snapshot;
+    }
+
+    long totalCalls() {
+        return calls.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    void resetCalls() {
+        calls.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            sleepNanos(sampleLatencyNanos());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String city = query.getOrDefault("q", query.get("lat") + "," + query.get("lon"));
+            double draw = random.nextDouble();
+            if (outage) {
+                respond(exchange, "outage", 503, "{\"cod\":503,\"message\":\"service unavailable\"}");
+            } else if (draw < rateLimitedRate) {
+                respond(exchange, "rate_limited", 429, "{\"cod\":429,\"message\":\"Your account is temporary blocked due to exceeding of requests limitation\"}");
+            } else if (city.startsWith("Nowhere") || draw < rateLimitedRate + notFoundRate) {
+                respond(exchange, "not_found", 404, "{\"cod\":\"404\",\"message\":\"city not found\"}");
+            } else if (draw < rateLimitedRate + notFoundRate + errorRate) {
+                respond(exchange, "server_error", 500, "{\"cod\":500,\"message\":\"internal error\"}");
+            } else {
+                respond(exchange, "success", 200, payload(city));
+            }
+        }
+    }
+
+    private long sampleLatencyNanos() {
+        return (long) Math.exp(latencyMu + latencySigma * ThreadLocalRandom.current().nextGaussian());
+    }
+
+    private void respond(HttpExchange exchange, String outcome, int status, String body) throws IOException {
+        calls.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A full current-weather document, with readings that differ per city and drift slowly over time.
+     */
+    private static String payload(String city) {
+        int seed = city.hashCode();
+        double drift = Math.sin(System.currentTimeMillis() / 600_000.0 + seed);
+        double temperature = (seed & 0x3f) / 2.0 - 5 + drift;
+        int humidity = 20 + Math.floorMod(seed, 70);
+        double windSpeed = Math.floorMod(seed >> 8, 120) / 10.0;
+        return String.format(Locale.ROOT, """
+                {"coord":{"lon":51.4215,"lat":35.6944},
+                 "weather":[{"id":800,"main":"Clear","description":"clear sky","icon":"01d"}],
+                 "base":"stations",
+                 "main":{"temp":%.2f,"feels_like":%.2f,"temp_min":%.2f,"temp_max":%.2f,"pressure":1015,"humidity":%d,
+                         "sea_level":1015,"grnd_level":870},
+                 "visibility":10000,"wind":{"speed":%.1f,"deg":240,"gust":%.1f},"clouds":{"all":0},
+                 "dt":%d,"sys":{"type":2,"id":47737,"country":"IR","sunrise":1678849567,"sunset":1678892612},
+                 "timezone":12600,"id":%d,"name":"%s","cod":200}
+                """, temperature, temperature - 1.5, temperature - 2, temperature + 2, humidity, windSpeed,
+                windSpeed * 1.6, System.currentTimeMillis() / 1000, Math.abs(seed), city.replace("\"", ""));
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new TreeMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.mhh.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.service.UpstreamFetchListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Chooses a weatherCache TTL per key from how much the weather changed between its last two fetches and how
+ * often the key is requested, between {@code min-ttl} and {@code max-ttl}.
+ * <p>
+ * Each fetch compares temperature, humidity and wind speed with the previous fetch of the key. The largest
+ * change relative to its threshold (e.g. 1.0 = temperature moved by {@code temperature-threshold}) scales the
+ * key's TTL: a change of 2 thresholds halves it, and no change grows it by half, so calm cities drift towards
+ * {@code max-ttl} and volatile ones towards {@code min-ttl}. That TTL is then stretched towards {@code max-ttl}
+ * for keys requested fewer than {@code popular-requests} times (as estimated by {@link HotCityTracker}), since
+ * fewer readers see their data and it is only fetched again on demand.
+ * <p>
+ * Upstream calls saved compared with the fixed {@code weather.cache.ttl} are estimated per fetch from the TTL
+ * of the entry it replaced: an entry that lived twice the fixed TTL saved one call, one that lived half of it
+ * cost half a call extra. Only refetches after the previous entry expired are counted. A refetch before that
+ * means the entry was evicted for size, which the fixed TTL would not have prevented, and keys that went
+ * unrequested for a while after expiring would not have needed a call with the fixed TTL either.
+ * <p>
+ * Only used without refresh-ahead, whose reload interval Caffeine applies to all entries alike.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.cache.adaptive-ttl.enabled", havingValue = "true")
+public class AdaptiveTtl implements UpstreamFetchListener {
+
+    private final HotCityTracker hotCityTracker;
+    private final long fixedTtlNanos;
+    private final long minTtlNanos;
+    private final long maxTtlNanos;
+    private final double temperatureThreshold;
+    private final double humidityThreshold;
+    private final double windSpeedThreshold;
+    private final int popularRequests;
+    // cache key -> what the key's TTL was derived from; kept after the entry expires so a refetch can compare
+    private final Cache<String, KeyState> states;
+    private final Counter callsSaved;
+    private final Counter callsExtra;
+    private final DistributionSummary assignedTtl;
+
+    public AdaptiveTtl(HotCityTracker hotCityTracker, MeterRegistry meterRegistry,
+                       @Value("${weather.cache.ttl:10m}") Duration fixedTtl,
+                       @Value("${weather.cache.maximum-size:500}") long maximumSize,
+                       @Value("${weather.cache.adaptive-ttl.min-ttl:5m}") Duration minTtl,
+                       @Value("${weather.cache.adaptive-ttl.max-ttl:30m}") Duration maxTtl,
+                       @Value("${weather.cache.adaptive-ttl.temperature-threshold:0.5}") double temperatureThreshold,
+                       @Value("${weather.cache.adaptive-ttl.humidity-threshold:5}") double humidityThreshold,
+                       @Value("${weather.cache.adaptive-ttl.wind-speed-threshold:1.0}") double windSpeedThreshold,
+                       @Value("${weather.cache.adaptive-ttl.popular-requests:10}") int popularRequests) {
+        if (minTtl.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("weather.cache.adaptive-ttl.min-ttl must not exceed max-ttl");
+        }
+        this.hotCityTracker = hotCityTracker;
+        this.fixedTtlNanos = fixedTtl.toNanos();
+        this.minTtlNanos = minTtl.toNanos();
+        this.maxTtlNanos = maxTtl.toNanos();
+        this.temperatureThreshold = temperatureThreshold;
+        this.humidityThreshold = humidityThreshold;
+        this.windSpeedThreshold = windSpeedThreshold;
+        this.popularRequests = Math.max(1, popularRequests);
+        this.states = Caffeine.newBuilder().maximumSize(4 * maximumSize).build();
+        this.callsSaved = Counter.builder("weather.cache.adaptive.calls.saved")
+                .description("Estimated upstream calls saved by adaptive TTLs compared with the fixed TTL")
+                .register(meterRegistry);
+        this.callsExtra = Counter.builder("weather.cache.adaptive.calls.extra")
+                .description("Estimated upstream calls made in addition to the fixed TTL because of shorter adaptive TTLs")
+                .register(meterRegistry);
+        this.assignedTtl = DistributionSummary.builder("weather.cache.adaptive.ttl")
+                .description("TTLs assigned to weatherCache entries")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onFetched(String cacheKey, WeatherResponseDTO weather) {
+        Instant fetchedAt = weather.getFetchedAt() != null ? weather.getFetchedAt() : Instant.now();
+        states.asMap().compute(cacheKey, (key, previous) -> {
+            long volatilityTtl = previous == null ? fixedTtlNanos : nextVolatilityTtl(previous, weather);
+            if (previous != null) {
+                recordSavings(previous, fetchedAt);
+            }
+            long ttl = stretchForPopularity(cacheKey, volatilityTtl);
+            assignedTtl.record(ttl / 1e9);
+            return new KeyState(weather.getTemperature(), weather.getHumidity(), weather.getWindSpeed(), fetchedAt,
+                    volatilityTtl, ttl);
+        });
+    }
+
+    /**
+     * TTL for the entry of the key, {@code weather.cache.ttl} for keys not fetched yet.
+     */
+    public Duration ttlFor(Object cacheKey) {
+        KeyState state = cacheKey instanceof String key ? states.getIfPresent(key) : null;
+        return Duration.ofNanos(state != null ? state.ttlNanos : fixedTtlNanos);
+    }
+
+    private long nextVolatilityTtl(KeyState previous, WeatherResponseDTO weather) {
+        double change = Math.max(Math.abs(weather.getTemperature() - previous.temperature) / temperatureThreshold,
+                Math.max(Math.abs(weather.getHumidity() - previous.humidity) / humidityThreshold,
+                        Math.abs(weather.getWindSpeed() - previous.windSpeed) / windSpeedThreshold));
+        // change 0 -> x1.5, 1 -> x1, 2 -> x0.5
+        double factor = Math.max(0.5, 1.5 - change / 2);
+        return clamp(Math.round(previous.volatilityTtlNanos * factor));
+    }
+
+    private long stretchForPopularity(String cacheKey, long volatilityTtl) {
+        double popularity = Math.min(1.0, (double) hotCityTracker.estimate(cacheKey) / popularRequests);
+        return clamp(maxTtlNanos - Math.round(popularity * (maxTtlNanos - volatilityTtl)));
+    }
+
+    private void recordSavings(KeyState previous, Instant fetchedAt) {
+        long gap = Math.max(0, Duration.between(previous.fetchedAt, fetchedAt).toNanos());
+        if (gap < previous.ttlNanos) {
+            // refetched before it expired: the entry was evicted, not aged out by its TTL
+            return;
+        }
+        if (gap > previous.ttlNanos + fixedTtlNanos) {
+            // nobody asked for the key for a while after it expired, so the fixed TTL would not have cost more
+            return;
+        }
+        double saved = (double) previous.ttlNanos / fixedTtlNanos - 1;
+        if (saved > 0) {
+            callsSaved.increment(saved);
+        } else if (saved < 0) {
+            callsExtra.increment(-saved);
+        }
+    }
+
+    private long clamp(long ttlNanos) {
+        return Math.max(minTtlNanos, Math.min(maxTtlNanos, ttlNanos));
+    }
+
+    private record KeyState(double temperature, int humidity, double windSpeed, Instant fetchedAt,
+                            long volatilityTtlNanos, long ttlNanos) {
+    }
+}
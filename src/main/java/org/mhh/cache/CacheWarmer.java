@@ -0,0 +1,226 @@
+package org.mhh.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.service.WeatherService;
+import org.mhh.upstream.UpstreamPriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-fetches the top-N cities into weatherCache on startup and reports OUT_OF_SERVICE until enough of them
+ * are loaded, so the readiness probe keeps traffic away from a cold cache.
+ * <p>
+ * The cities are the most requested ones of the previous run (saved from {@link HotCityTracker}) followed by
+ * the configured hot-city file. They are fetched in parallel on the fetch executor with background upstream
+ * priority, with submissions paced to {@code weather.warmup.rate} per second. The service turns ready
+ * once {@code weather.warmup.ready-fraction} of the cities are cached, every load has finished, or
+ * {@code weather.warmup.max-wait} has passed, whichever comes first; an upstream outage therefore delays
+ * readiness but cannot keep the service out of rotation.
+ */
+@Component
+public class CacheWarmer implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final WeatherService weatherService;
+    private final WeatherCacheAccess weatherCache;
+    private final HotCityTracker hotCityTracker;
+    private final CityKeyGenerator cityKeys;
+    private final ClusterRouting clusterRouting;
+    private final ExecutorService executor;
+    private final boolean enabled;
+    private final Resource citiesFile;
+    private final Path historyFile;
+    private final int topN;
+    private final double ratePerSecond;
+    private final double readyFraction;
+    private final long readyDeadline;
+
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private volatile int planned = -1;
+
+    public CacheWarmer(WeatherService weatherService,
+                       WeatherCacheAccess weatherCache,
+                       HotCityTracker hotCityTracker,
+                       CityKeyGenerator cityKeys,
+                       ClusterRouting clusterRouting,
+                       @Qualifier("weatherFetchExecutor") ExecutorService executor,
+                       @Value("${weather.warmup.enabled:false}") boolean enabled,
+                       @Value("${weather.warmup.cities-file:classpath:hot-cities.txt}") Resource citiesFile,
+                       @Value("${weather.warmup.history-file:data/hot-cities-history.txt}") Path historyFile,
+                       @Value("${weather.warmup.top-n:50}") int topN,
+                       @Value("${weather.warmup.rate:5}") double ratePerSecond,
+                       @Value("${weather.warmup.ready-fraction:0.8}") double readyFraction,
+                       @Value("${weather.warmup.max-wait:60s}") Duration maxWait) {
+        this.weatherService = weatherService;
+        this.weatherCache = weatherCache;
+        this.hotCityTracker = hotCityTracker;
+        this.cityKeys = cityKeys;
+        this.clusterRouting = clusterRouting;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.citiesFile = citiesFile;
+        this.historyFile = historyFile;
+        this.topN = topN;
+        this.ratePerSecond = ratePerSecond;
+        this.readyFraction = readyFraction;
+        this.readyDeadline = System.nanoTime() + maxWait.toNanos();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            Thread warmup = new Thread(this::warmUp, "cache-warmup");
+            warmup.setDaemon(true);
+            warmup.start();
+        }
+    }
+
+    /**
+     * Loads the planned cities and returns once every load has finished.
+     */
+    public void warmUp() {
+        List<String> cities = plan();
+        planned = cities.size();
+        long start = System.nanoTime();
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long nextSlot = start;
+        List<CompletableFuture<Void>> loads = new ArrayList<>(cities.size());
+        for (String city : cities) {
+            if (weatherCache.peek(city) != null) {
+                loaded.incrementAndGet();
+                finished.incrementAndGet();
+                continue;
+            }
+            long wait = nextSlot - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            nextSlot = Math.max(nextSlot, System.nanoTime()) + interval;
+            loads.add(CompletableFuture.runAsync(() -> load(city), executor));
+        }
+        CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).join();
+        finished.set(planned);
+        log.info("Cache warm-up loaded {} of {} cities in {} ms", loaded.get(), planned,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public Health health() {
+        if (!enabled) {
+            return Health.up().withDetail("warmup", "disabled").build();
+        }
+        Health.Builder health = isReady() ? Health.up() : Health.outOfService();
+        return health.withDetail("planned", Math.max(planned, 0))
+                .withDetail("loaded", loaded.get())
+                .withDetail("finished", finished.get())
+                .build();
+    }
+
+    boolean isReady() {
+        if (!enabled || System.nanoTime() - readyDeadline > 0) {
+            return true;
+        }
+        int total = planned;
+        return total >= 0 && (finished.get() >= total || loaded.get() >= Math.ceil(total * readyFraction));
+    }
+
+    /**
+     * Saves the currently most requested cities for the next startup's warm-up.
+     */
+    @Scheduled(fixedDelayString = "${weather.warmup.history-interval:PT5M}",
+            initialDelayString = "${weather.warmup.history-interval:PT5M}")
+    @PreDestroy
+    public void saveHistory() {
+        List<String> hotCities = hotCityTracker.topCities(topN);
+        if (!enabled || hotCities.isEmpty()) {
+            return;
+        }
+        try {
+            Path parent = historyFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, historyFile.getFileName().toString(), ".tmp");
+            Files.write(temp, hotCities, StandardCharsets.UTF_8);
+            Files.move(temp, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save hot-city history to {}: {}", historyFile, e.getMessage());
+        }
+    }
+
+    private void load(String city) {
+        try {
+            weatherCache.put(city, weatherService.fetchWeatherData(city, UpstreamPriority.BACKGROUND));
+            loaded.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.debug("Warm-up of {} failed: {}", city, e.getMessage());
+        } finally {
+            finished.incrementAndGet();
+        }
+    }
+
+    private List<String> plan() {
+        Map<String, String> citiesByKey = new LinkedHashMap<>();
+        if (Files.exists(historyFile)) {
+            try {
+                addCities(citiesByKey, Files.readAllLines(historyFile, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.warn("Could not read hot-city history {}: {}", historyFile, e.getMessage());
+            }
+        }
+        if (citiesFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(citiesFile.getInputStream(), StandardCharsets.UTF_8))) {
+                addCities(citiesByKey, reader.lines().toList());
+            } catch (IOException e) {
+                log.warn("Could not read hot-city file {}: {}", citiesFile, e.getMessage());
+            }
+        }
+        return citiesByKey.values().stream().limit(topN).toList();
+    }
+
+    private void addCities(Map<String, String> citiesByKey, List<String> lines) {
+        for (String line : lines) {
+            String city = line.trim();
+            if (city.isEmpty() || city.startsWith("#")) {
+                continue;
+            }
+            String key = cityKeys.keyFor(city);
+            // in cluster mode each instance warms only the cities it owns
+            if (hotCityTracker.isWarmable(key) && clusterRouting.isLocal(city)) {
+                citiesByKey.putIfAbsent(key, city);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.mhh.cache;
+
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.gazetteer.CityNames;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * Canonical cache key of a city: the folded name ({@link CityNames#fold(String)}), with known aliases replaced
+ * by the canonical name from the {@link CityGazetteer}, so "Teheran", " tehran " and "TEHRAN," share one entry.
+ * <p>
+ * Registered as {@code cityKeyGenerator} for {@code @Cacheable}, which avoids evaluating a SpEL key expression
+ * on every call.
+ * <p>
+ * The key is the folded canonical name rather than the gazetteer id. Cities missing from the gazetteer have no
+ * id but still need a key, and a key is also a valid city name: the refresh-ahead loader and cluster peers
+ * only have the key and pass it back into {@link #keyFor(String)} and upstream, so one key space serves both.
+ * Renaming a city in cities.tsv therefore changes its key. Keep the old name as an alias so lookups resolve
+ * to the new name; entries and history stored under the old key are no longer read and expire on their own.
+ */
+@Component("cityKeyGenerator")
+public class CityKeyGenerator implements KeyGenerator {
+
+    private final CityGazetteer gazetteer;
+
+    public CityKeyGenerator(CityGazetteer gazetteer) {
+        this.gazetteer = gazetteer;
+    }
+
+    /**
+     * @return the cache key, empty if the name has no letters or digits
+     */
+    public String keyFor(String city) {
+        String folded = CityNames.fold(city);
+        String canonical = gazetteer.canonicalName(folded);
+        return canonical != null ? CityNames.fold(canonical) : folded;
+    }
+
+    /**
+     * The name to send upstream: the canonical gazetteer name for known cities, the cleaned input otherwise.
+     */
+    public String queryFor(String city) {
+        String canonical = gazetteer.canonicalName(CityNames.fold(city));
+        return canonical != null ? canonical : CityNames.clean(city);
+    }
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        return keyFor((String) params[0]);
+    }
+}
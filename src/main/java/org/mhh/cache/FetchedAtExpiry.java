@@ -0,0 +1,45 @@
+package org.mhh.cache;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.mhh.dto.WeatherResponseDTO;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Expires weatherCache entries a TTL after the data was fetched upstream rather than after it was put into the
+ * cache, so entries restored from disk keep their original age. The TTL is either fixed or chosen per key.
+ */
+public class FetchedAtExpiry implements Expiry<Object, Object> {
+
+    private final Function<Object, Duration> ttlForKey;
+
+    public FetchedAtExpiry(Duration ttl) {
+        this(key -> ttl);
+    }
+
+    public FetchedAtExpiry(Function<Object, Duration> ttlForKey) {
+        this.ttlForKey = ttlForKey;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        long ttlNanos = ttlForKey.apply(key).toNanos();
+        if (value instanceof WeatherResponseDTO weather && weather.getFetchedAt() != null) {
+            long ageNanos = Duration.between(weather.getFetchedAt(), Instant.now()).toNanos();
+            return Math.max(0, ttlNanos - Math.max(0, ageNanos));
+        }
+        return ttlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
@@ -0,0 +1,106 @@
+package org.mhh.cache;
+
+import org.mhh.exception.InvalidInputException;
+import org.mhh.geo.GeoGrid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a rolling record of the most requested cities: a {@link FrequencySketch} of all requested keys plus a small
+ * bounded set of the current top candidates. Recording an access is a few counter increments; the candidate set is
+ * only scanned when a key becomes more popular than the least popular candidate. Cities the upstream answered with
+ * 404 and malformed cell keys are not tracked, so they are never warmed up.
+ */
+@Component
+public class HotCityTracker {
+
+    private final CityKeyGenerator cityKeys;
+    private final UnknownCityCache unknownCities;
+    private final FrequencySketch sketch;
+    private final int capacity;
+    // cache key -> city name to warm up with
+    private final Map<String, String> candidates = new ConcurrentHashMap<>();
+    private volatile int admissionThreshold;
+
+    public HotCityTracker(CityKeyGenerator cityKeys, UnknownCityCache unknownCities,
+                          @Value("${weather.warmup.tracked-cities:200}") int capacity) {
+        this.cityKeys = cityKeys;
+        this.unknownCities = unknownCities;
+        this.capacity = capacity;
+        this.sketch = new FrequencySketch(capacity * 64);
+    }
+
+    public void recordAccess(String city) {
+        if (city == null || city.isBlank()) {
+            return;
+        }
+        String key = cityKeys.keyFor(city);
+        if (!isWarmable(key)) {
+            return;
+        }
+        sketch.increment(key);
+        if (candidates.containsKey(key)) {
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.putIfAbsent(key, cityKeys.queryFor(city));
+        } else if (sketch.estimate(key) > admissionThreshold) {
+            admit(key, cityKeys.queryFor(city));
+        }
+    }
+
+    public int estimate(String city) {
+        return sketch.estimate(cityKeys.keyFor(city));
+    }
+
+    /**
+     * The {@code limit} most requested cities, most popular first.
+     */
+    public List<String> topCities(int limit) {
+        return candidates.entrySet().stream()
+                // a candidate may have been admitted by the request that found it unknown
+                .filter(entry -> !unknownCities.isUnknownQuietly(entry.getKey()))
+                .sorted(Comparator.comparingInt((Map.Entry<String, String> entry) -> sketch.estimate(entry.getKey())).reversed())
+                .limit(limit)
+                .map(Map.Entry::getValue)
+                .toList();
+    }
+
+    /**
+     * Whether a lookup of the cache key can succeed: it is not empty, a well-formed cell key if it is one, and
+     * not a city the upstream recently answered with 404.
+     */
+    public boolean isWarmable(String key) {
+        if (key.isEmpty() || unknownCities.isUnknownQuietly(key)) {
+            return false;
+        }
+        try {
+            GeoGrid.parseCellKey(key);
+            return true;
+        } catch (InvalidInputException e) {
+            return false;
+        }
+    }
+
+    private synchronized void admit(String key, String city) {
+        String coldest = null;
+        int coldestFrequency = Integer.MAX_VALUE;
+        for (String candidate : candidates.keySet()) {
+            int frequency = sketch.estimate(candidate);
+            if (frequency < coldestFrequency) {
+                coldest = candidate;
+                coldestFrequency = frequency;
+            }
+        }
+        if (coldest != null && sketch.estimate(key) > coldestFrequency) {
+            candidates.remove(coldest);
+            candidates.put(key, city);
+        }
+        admissionThreshold = coldestFrequency;
+    }
+}
@@ -0,0 +1,50 @@
+package org.mhh.cache;
+
+import org.mhh.config.CacheConfiguration;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Negative cache of cities the upstream answered with 404, keyed by the same city keys as weatherCache.
+ * <p>
+ * Backed by the short-lived {@value CacheConfiguration#UNKNOWN_CITY_CACHE} cache, so repeated lookups of an unknown
+ * city are answered locally and show up in that cache's own hit/miss metrics.
+ */
+@Component
+public class UnknownCityCache {
+
+    private final CacheManager cacheManager;
+
+    public UnknownCityCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public boolean isUnknown(String cacheKey) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.UNKNOWN_CITY_CACHE);
+        return cache != null && cache.get(cacheKey) != null;
+    }
+
+    /**
+     * Same answer as {@link #isUnknown(String)} without counting a hit or miss, for bookkeeping that is not a
+     * lookup (hot-city tracking, warm-up), so the cache's hit ratio keeps measuring lookups only.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean isUnknownQuietly(String cacheKey) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.UNKNOWN_CITY_CACHE);
+        if (cache == null) {
+            return false;
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache) {
+            return ((com.github.benmanes.caffeine.cache.Cache<Object, ?>) caffeineCache).policy().getIfPresentQuietly(cacheKey) != null;
+        }
+        return cache.get(cacheKey) != null;
+    }
+
+    public void markUnknown(String cacheKey) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.UNKNOWN_CITY_CACHE);
+        if (cache != null) {
+            cache.put(cacheKey, Boolean.TRUE);
+        }
+    }
+}
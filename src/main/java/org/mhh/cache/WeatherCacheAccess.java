@@ -0,0 +1,114 @@
+package org.mhh.cache;
+
+import org.mhh.config.CacheConfiguration;
+import org.mhh.dto.WeatherResponseDTO;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Direct access to weatherCache for callers that must not trigger a load on a miss.
+ * <p>
+ * {@link Cache#get(Object)} on a loading cache (refresh-ahead mode) loads absent keys synchronously,
+ * so lookups go to the native Caffeine cache when there is one.
+ */
+@Component
+public class WeatherCacheAccess {
+
+    private final CacheManager cacheManager;
+    private final CityKeyGenerator cityKeys;
+
+    public WeatherCacheAccess(CacheManager cacheManager, CityKeyGenerator cityKeys) {
+        this.cacheManager = cacheManager;
+        this.cityKeys = cityKeys;
+    }
+
+    public WeatherResponseDTO peek(String city) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        if (cache == null) {
+            return null;
+        }
+        String key = cityKeys.keyFor(city);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache(cache);
+        if (nativeCache != null) {
+            return (WeatherResponseDTO) nativeCache.getIfPresent(key);
+        }
+        return cache.get(key, WeatherResponseDTO.class);
+    }
+
+    /**
+     * Time until the city's entry expires, or {@code null} if it is not cached or the cache has no per-entry expiry.
+     */
+    public Duration remainingTtl(String city) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = cache != null ? caffeineCache(cache) : null;
+        if (nativeCache == null) {
+            return null;
+        }
+        return nativeCache.policy().expireVariably()
+                .flatMap(expiry -> expiry.getExpiresAfter(cityKeys.keyFor(city)))
+                .orElse(null);
+    }
+
+    public void put(String city, WeatherResponseDTO weather) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        if (cache != null) {
+            cache.put(cityKeys.keyFor(city), weather);
+        }
+    }
+
+    /**
+     * Stores the entry unless the cache already holds one fetched later, so a copy handed over by another
+     * instance never replaces a fresher local fetch. Returns whether the entry was stored.
+     */
+    public boolean putIfNewer(String city, WeatherResponseDTO weather) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        if (cache == null) {
+            return false;
+        }
+        String key = cityKeys.keyFor(city);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache(cache);
+        if (nativeCache == null) {
+            return cache.putIfAbsent(key, weather) == null;
+        }
+        return nativeCache.asMap().merge(key, weather,
+                (existing, offered) -> isNewer((WeatherResponseDTO) offered, (WeatherResponseDTO) existing) ? offered : existing) == weather;
+    }
+
+    public void evict(String city) {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        if (cache != null) {
+            cache.evict(cityKeys.keyFor(city));
+        }
+    }
+
+    /**
+     * Snapshot of the cached keys, or an empty list if the cache cannot be iterated.
+     */
+    public List<String> keys() {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = cache != null ? caffeineCache(cache) : null;
+        if (nativeCache == null) {
+            return List.of();
+        }
+        return nativeCache.asMap().keySet().stream().map(String::valueOf).toList();
+    }
+
+    private static boolean isNewer(WeatherResponseDTO offered, WeatherResponseDTO existing) {
+        Instant offeredAt = offered.getFetchedAt();
+        Instant existingAt = existing.getFetchedAt();
+        return existingAt == null || (offeredAt != null && offeredAt.isAfter(existingAt));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache(Cache cache) {
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache) {
+            return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) caffeineCache;
+        }
+        return null;
+    }
+}
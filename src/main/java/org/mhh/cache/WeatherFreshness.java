@@ -0,0 +1,58 @@
+package org.mhh.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhh.dto.WeatherResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Decides whether a cached {@link WeatherResponseDTO} is past the refresh-ahead soft TTL.
+ * <p>
+ * Cached instances are shared between requests, so stale entries are flagged on a copy. The copy is kept for
+ * as long as the cached instance is, so every stale hit on an entry returns the same instance, which lets
+ * per-instance work such as pre-encoded response bytes be reused.
+ */
+@Component
+public class WeatherFreshness {
+
+    private final boolean refreshAheadEnabled;
+    private final Duration softTtl;
+    private final Clock clock;
+    private final Cache<WeatherResponseDTO, WeatherResponseDTO> staleCopies;
+
+    public WeatherFreshness(@Value("${weather.cache.refresh-ahead.enabled:false}") boolean refreshAheadEnabled,
+                            @Value("${weather.cache.refresh-ahead.soft-ttl:2m}") Duration softTtl) {
+        this.refreshAheadEnabled = refreshAheadEnabled;
+        this.softTtl = softTtl;
+        this.clock = Clock.systemUTC();
+        // weak keys are compared by identity and dropped together with the weatherCache entry
+        this.staleCopies = Caffeine.newBuilder().weakKeys().build();
+    }
+
+    public boolean isStale(WeatherResponseDTO weatherData) {
+        Instant fetchedAt = weatherData.getFetchedAt();
+        return refreshAheadEnabled && fetchedAt != null
+                && Duration.between(fetchedAt, clock.instant()).compareTo(softTtl) > 0;
+    }
+
+    /**
+     * Time until the entry passes the soft TTL, or {@code null} when refresh-ahead is disabled.
+     */
+    public Duration remainingFreshness(WeatherResponseDTO weatherData) {
+        Instant fetchedAt = weatherData.getFetchedAt();
+        if (!refreshAheadEnabled || fetchedAt == null) {
+            return null;
+        }
+        Duration remaining = softTtl.minus(Duration.between(fetchedAt, clock.instant()));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    public WeatherResponseDTO markIfStale(WeatherResponseDTO weatherData) {
+        return isStale(weatherData) ? staleCopies.get(weatherData, cached -> cached.withStale(true)) : weatherData;
+    }
+}
@@ -0,0 +1,269 @@
+package org.mhh.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.mhh.config.CacheConfiguration;
+import org.mhh.dto.GeoCellDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.geo.GeoGrid;
+import org.mhh.service.UpstreamFetchListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Optional on-disk second tier behind weatherCache, so a restart does not start with an empty cache.
+ * <p>
+ * Every upstream result is appended to a single file as a length- and CRC-prefixed binary record. On startup
+ * the latest record per key is put back into weatherCache, whose expiry is based on the original fetch time,
+ * so only entries still within their TTL survive. The file is periodically rewritten from the live cache
+ * contents to drop superseded and expired records. A torn record at the end of the file (crash mid-write)
+ * ends the replay and is removed by the next compaction.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.cache.persistence.enabled", havingValue = "true")
+public class WeatherSnapshotStore implements UpstreamFetchListener, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherSnapshotStore.class);
+    private static final int MAGIC = 0x57434331; // "WCC1"
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    // length and CRC32 of the payload
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final CacheManager cacheManager;
+    private final Path file;
+    private DataOutputStream appender;
+
+    public WeatherSnapshotStore(CacheManager cacheManager,
+                                @Value("${weather.cache.persistence.file:data/weather-cache.bin}") Path file) {
+        this.cacheManager = cacheManager;
+        this.file = file;
+    }
+
+    /**
+     * Restores weatherCache before the application starts serving requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, WeatherResponseDTO> latest = replay();
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = nativeCache();
+        latest.forEach(cache::put);
+        cache.cleanUp();
+        log.info("Restored {} of {} persisted weatherCache entries from {}", cache.estimatedSize(), latest.size(), file);
+        compact();
+    }
+
+    @Override
+    public synchronized void onFetched(String cacheKey, WeatherResponseDTO weather) {
+        if (appender == null) {
+            return;
+        }
+        try {
+            writeRecord(appender, cacheKey, weather);
+            appender.flush();
+        } catch (IOException e) {
+            log.warn("Could not persist weatherCache entry {} to {}: {}", cacheKey, file, e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the file from the live cache contents and reopens it for appending.
+     */
+    @Scheduled(fixedDelayString = "${weather.cache.persistence.compaction-interval:PT10M}",
+            initialDelayString = "${weather.cache.persistence.compaction-interval:PT10M}")
+    public synchronized void compact() {
+        try {
+            closeAppender();
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path compacted = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            int written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+                out.writeInt(MAGIC);
+                for (Map.Entry<Object, Object> entry : nativeCache().asMap().entrySet()) {
+                    if (entry.getKey() instanceof String key && entry.getValue() instanceof WeatherResponseDTO weather) {
+                        writeRecord(out, key, weather);
+                        written++;
+                    }
+                }
+            }
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Compacted {} to {} entries", file, written);
+        } catch (IOException e) {
+            log.warn("Could not compact {}: {}", file, e.getMessage());
+        } finally {
+            openAppender();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        compact();
+        closeAppender();
+    }
+
+    private Map<String, WeatherResponseDTO> replay() {
+        Map<String, WeatherResponseDTO> latest = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return latest;
+        }
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                log.warn("Ignoring {}: not a weatherCache snapshot file", file);
+                return latest;
+            }
+            offset = Integer.BYTES;
+            while (true) {
+                byte[] header = in.readNBytes(RECORD_HEADER_SIZE);
+                if (header.length == 0) {
+                    break;
+                }
+                if (header.length < RECORD_HEADER_SIZE) {
+                    log.warn("Stopping replay of {} at offset {}: torn record header ({} of {} bytes)",
+                            file, offset, header.length, RECORD_HEADER_SIZE);
+                    break;
+                }
+                DataInputStream headerFields = new DataInputStream(new ByteArrayInputStream(header));
+                int length = headerFields.readInt();
+                long checksum = Integer.toUnsignedLong(headerFields.readInt());
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    log.warn("Stopping replay of {} at offset {}: corrupt record length {}", file, offset, length);
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length) {
+                    log.warn("Stopping replay of {} at offset {}: truncated record ({} of {} bytes)",
+                            file, offset, payload.length, length);
+                    break;
+                }
+                long actual = crc(payload);
+                if (checksum != actual) {
+                    log.warn("Stopping replay of {} at offset {}: CRC mismatch (stored {}, computed {})",
+                            file, offset, Long.toHexString(checksum), Long.toHexString(actual));
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                String key = record.readUTF();
+                latest.put(key, readWeather(record));
+                offset += RECORD_HEADER_SIZE + length;
+            }
+        } catch (IOException e) {
+            log.warn("Could not fully read {}, stopped at offset {}: {}", file, offset, e.toString());
+        }
+        return latest;
+    }
+
+    private void writeRecord(OutputStream out, String key, WeatherResponseDTO weather) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(96);
+        DataOutputStream record = new DataOutputStream(buffer);
+        record.writeUTF(key);
+        writeWeather(record, weather);
+        byte[] payload = buffer.toByteArray();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(payload.length);
+        data.writeInt((int) crc(payload));
+        data.write(payload);
+    }
+
+    private static void writeWeather(DataOutputStream out, WeatherResponseDTO weather) throws IOException {
+        out.writeLong(weather.getFetchedAt() != null ? weather.getFetchedAt().toEpochMilli() : Long.MIN_VALUE);
+        writeNullableString(out, weather.getCityName());
+        out.writeDouble(weather.getTemperature() != null ? weather.getTemperature() : Double.NaN);
+        writeNullableString(out, weather.getDescription());
+        out.writeInt(weather.getHumidity() != null ? weather.getHumidity() : Integer.MIN_VALUE);
+        out.writeDouble(weather.getWindSpeed() != null ? weather.getWindSpeed() : Double.NaN);
+        // optional trailing field, absent in records written before coordinate lookups existed
+        if (weather.getCell() != null) {
+            out.writeUTF(weather.getCell().getGeohash());
+        }
+    }
+
+    private static WeatherResponseDTO readWeather(DataInputStream in) throws IOException {
+        long fetchedAt = in.readLong();
+        String cityName = readNullableString(in);
+        double temperature = in.readDouble();
+        String description = readNullableString(in);
+        int humidity = in.readInt();
+        double windSpeed = in.readDouble();
+        GeoCellDTO cell = in.available() > 0 ? GeoGrid.decode(in.readUTF()) : null;
+        return new WeatherResponseDTO(cityName,
+                Double.isNaN(temperature) ? null : temperature,
+                description,
+                humidity == Integer.MIN_VALUE ? null : humidity,
+                Double.isNaN(windSpeed) ? null : windSpeed,
+                fetchedAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(fetchedAt),
+                false,
+                cell);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private void openAppender() {
+        try {
+            appender = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            log.warn("Could not open {} for appending, weatherCache entries will not be persisted: {}", file, e.getMessage());
+            appender = null;
+        }
+    }
+
+    private void closeAppender() {
+        if (appender != null) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                log.warn("Could not close {}: {}", file, e.getMessage());
+            }
+            appender = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache() {
+        Cache cache = cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache)) {
+            throw new IllegalStateException("weatherCache must be a Caffeine cache to be persisted");
+        }
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) caffeineCache;
+    }
+}
@@ -0,0 +1,58 @@
+package org.mhh.cluster;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.BasicOperation;
+import org.springframework.cache.interceptor.CacheOperationInvocationContext;
+import org.springframework.cache.interceptor.CacheResolver;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache resolver for {@code @Cacheable} lookups by city: the named caches for cities this instance owns, and
+ * a {@link NoOpCache} for cities owned by another cluster member, so those always reach the method (which
+ * forwards them) and their results are not stored here. Plain code instead of a SpEL {@code condition}, and the
+ * resolved caches are kept per operation, so a lookup costs one ownership check and no allocation.
+ */
+@Component
+public class ClusterCacheResolver implements CacheResolver {
+
+    private final CacheManager cacheManager;
+    private final ClusterRouting clusterRouting;
+    private final Map<BasicOperation, Collection<Cache>> localCaches = new ConcurrentHashMap<>();
+    private final Map<BasicOperation, Collection<Cache>> bypassCaches = new ConcurrentHashMap<>();
+
+    public ClusterCacheResolver(CacheManager cacheManager, ClusterRouting clusterRouting) {
+        this.cacheManager = cacheManager;
+        this.clusterRouting = clusterRouting;
+    }
+
+    @Override
+    public Collection<? extends Cache> resolveCaches(CacheOperationInvocationContext<?> context) {
+        Object[] args = context.getArgs();
+        boolean local = args.length == 0 || !(args[0] instanceof String city) || clusterRouting.isLocal(city);
+        if (local) {
+            return localCaches.computeIfAbsent(context.getOperation(), this::namedCaches);
+        }
+        return bypassCaches.computeIfAbsent(context.getOperation(),
+                operation -> operation.getCacheNames().stream().<Cache>map(NoOpCache::new).toList());
+    }
+
+    private Collection<Cache> namedCaches(BasicOperation operation) {
+        List<Cache> caches = new ArrayList<>(operation.getCacheNames().size());
+        for (String name : operation.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null) {
+                throw new IllegalArgumentException("Cannot find cache named '" + name + "' for " + operation);
+            }
+            caches.add(cache);
+        }
+        return List.copyOf(caches);
+    }
+}
@@ -0,0 +1,426 @@
+package org.mhh.cluster;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.SingleFlight;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.WeatherHistoryDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.exception.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Shards weatherCache across service instances: every key has one owner on a {@link ConsistentHashRing} of the
+ * cluster members, only the owner caches it and calls the upstream for it, and the other instances forward
+ * their misses to the owner.
+ * <p>
+ * A forwarded answer is kept in a small near-cache for {@code near-cache.ttl}, so hot keys are not fetched from
+ * the owner on every request. If the owner cannot be reached or fails, the instance fetches the key itself
+ * rather than failing the request. Members are the static {@code weather.cluster.members} plus the lines of
+ * {@code weather.cluster.members-file}, which is re-read every {@code members-refresh-interval}. When the
+ * members change, entries this instance no longer owns are handed to their new owner and dropped locally, and
+ * near-cache entries it now owns move into weatherCache. Observation history is recorded where a key is fetched,
+ * so history queries are forwarded to the owner as well. Members authenticate to each other's internal endpoints
+ * with the shared {@code weather.cluster.secret}. With {@code weather.cluster.enabled=false} every key
+ * is local and nothing here is used.
+ */
+@Component
+public class ClusterRouting {
+
+    public static final String WEATHER_PATH = "/internal/cluster/weather";
+    public static final String HISTORY_PATH = "/internal/cluster/history";
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    /** How far a handed-off entry's fetchedAt may lie ahead of this instance's clock. */
+    private static final Duration HANDOFF_CLOCK_SKEW = Duration.ofSeconds(5);
+    /** Retry-After passed on when an overloaded owner did not send one. */
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    /** Owners that are handed their batch at the same time after a membership change. */
+    private static final int HANDOFF_THREADS = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRouting.class);
+
+    private final RestTemplate restTemplate;
+    private final CityKeyGenerator cityKeys;
+    private final WeatherCacheAccess weatherCache;
+    private final boolean enabled;
+    private final String self;
+    private final byte[] secret;
+    private final HttpHeaders peerHeaders = new HttpHeaders();
+    private final List<String> staticMembers;
+    private final Path membersFile;
+    private final int virtualNodes;
+    private final Cache<String, WeatherResponseDTO> nearCache;
+    private final Duration handoffMaxAge;
+    private final ExecutorService handoffExecutor;
+    private final SingleFlight<String, WeatherResponseDTO> forwards = new SingleFlight<>();
+    private final ThreadLocal<Boolean> servingPeer = ThreadLocal.withInitial(() -> false);
+    private final Counter peerRequests;
+    private final Counter nearCacheHits;
+    private final Counter forwardedRequests;
+    private final Counter fallbackRequests;
+    private final Counter handoffs;
+
+    private volatile ConsistentHashRing ring;
+    private volatile boolean rebalanced;
+
+    @Autowired
+    public ClusterRouting(RestTemplate restTemplate, CityKeyGenerator cityKeys, WeatherCacheAccess weatherCache,
+                          MeterRegistry meterRegistry, ServingThreads servingThreads,
+                          @Value("${weather.cluster.enabled:false}") boolean enabled,
+                          @Value("${weather.cluster.self:}") String self,
+                          @Value("${weather.cluster.secret:}") String secret,
+                          @Value("${weather.cluster.members:}") String members,
+                          @Value("${weather.cluster.members-file:}") String membersFile,
+                          @Value("${weather.cluster.virtual-nodes:128}") int virtualNodes,
+                          @Value("${weather.cluster.near-cache.maximum-size:100}") long nearCacheMaximumSize,
+                          @Value("${weather.cluster.near-cache.ttl:30s}") Duration nearCacheTtl,
+                          @Value("${weather.cache.ttl:10m}") Duration handoffMaxAge) {
+        this(restTemplate, cityKeys, weatherCache, meterRegistry,
+                Executors.newFixedThreadPool(HANDOFF_THREADS, servingThreads.threadFactory("weather-cluster-handoff-")),
+                enabled, self, secret, members, membersFile, virtualNodes, nearCacheMaximumSize, nearCacheTtl, handoffMaxAge);
+    }
+
+    ClusterRouting(RestTemplate restTemplate, CityKeyGenerator cityKeys, WeatherCacheAccess weatherCache,
+                   MeterRegistry meterRegistry, ExecutorService handoffExecutor, boolean enabled, String self, String secret,
+                   String members, String membersFile, int virtualNodes, long nearCacheMaximumSize, Duration nearCacheTtl,
+                   Duration handoffMaxAge) {
+        this.restTemplate = restTemplate;
+        this.cityKeys = cityKeys;
+        this.weatherCache = weatherCache;
+        this.enabled = enabled;
+        this.self = normalize(self);
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.peerHeaders.set(SECRET_HEADER, secret);
+        this.staticMembers = parseMembers(Arrays.asList(members.split(",")));
+        this.membersFile = membersFile.isBlank() ? null : Path.of(membersFile.trim());
+        this.virtualNodes = virtualNodes;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaximumSize)
+                .expireAfterWrite(nearCacheTtl)
+                .build();
+        this.handoffMaxAge = handoffMaxAge;
+        this.handoffExecutor = handoffExecutor;
+        this.peerRequests = routeCounter(meterRegistry, "peer");
+        this.nearCacheHits = routeCounter(meterRegistry, "near_cache");
+        this.forwardedRequests = routeCounter(meterRegistry, "forwarded");
+        this.fallbackRequests = routeCounter(meterRegistry, "fallback");
+        this.handoffs = Counter.builder("weather.cluster.handoffs")
+                .description("weatherCache entries handed to their new owner after a membership change")
+                .register(meterRegistry);
+        if (enabled) {
+            if (this.self.isEmpty()) {
+                throw new IllegalStateException("weather.cluster.self must be set when weather.cluster.enabled=true");
+            }
+            if (secret.isBlank()) {
+                throw new IllegalStateException("weather.cluster.secret must be set when weather.cluster.enabled=true");
+            }
+            this.ring = new ConsistentHashRing(currentMembers(), virtualNodes);
+            log.info("Cluster mode enabled as {} with members {}", this.self, ring.getMembers());
+        }
+        Gauge.builder("weather.cluster.members", this, routing -> routing.ring == null ? 1 : routing.ring.getMembers().size())
+                .description("Instances on the consistent-hash ring")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether this instance caches and fetches the city itself. {@link ClusterCacheResolver} uses it so keys owned
+     * elsewhere never enter the local weatherCache. Requests served for a peer are always local.
+     */
+    public boolean isLocal(String city) {
+        if (!enabled || servingPeer.get() || city == null) {
+            return true;
+        }
+        String key = cityKeys.keyFor(city);
+        return key.isEmpty() || self.equals(ring.ownerOf(key));
+    }
+
+    /**
+     * Whether a request to the internal endpoints carries the shared {@code weather.cluster.secret}, compared in
+     * constant time. Always false with cluster mode off.
+     */
+    public boolean isTrustedPeer(String presentedSecret) {
+        return enabled && presentedSecret != null
+                && MessageDigest.isEqual(secret, presentedSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answers a key owned by another instance: from the near-cache, else from the owner, else from
+     * {@code localFetch} when the owner is unreachable. An owner that answers 503 or 429 is up but cannot reach
+     * the upstream itself, so that is passed on with its Retry-After instead of every member calling the
+     * upstream. Concurrent misses for a key share one call.
+     */
+    public WeatherResponseDTO fetchFromOwner(String city, Supplier<WeatherResponseDTO> localFetch) {
+        String key = cityKeys.keyFor(city);
+        WeatherResponseDTO cached = nearCache.getIfPresent(key);
+        if (cached != null) {
+            nearCacheHits.increment();
+            return cached;
+        }
+        String owner = ring.ownerOf(key);
+        return forwards.execute(key, () -> {
+            WeatherResponseDTO weather;
+            try {
+                weather = restTemplate.exchange(owner + WEATHER_PATH + "?key={key}", HttpMethod.GET,
+                        new HttpEntity<>(peerHeaders), WeatherResponseDTO.class, key).getBody();
+                forwardedRequests.increment();
+            } catch (HttpClientErrorException.NotFound e) {
+                throw CityNotFoundException.withoutStackTrace(city);
+            } catch (HttpClientErrorException.BadRequest e) {
+                throw new InvalidInputException("Invalid city name: " + city);
+            } catch (ResourceAccessException | HttpServerErrorException.BadGateway | HttpServerErrorException.GatewayTimeout e) {
+                log.debug("Owner {} of {} unreachable, fetching locally: {}", owner, key, e.getMessage());
+                weather = null;
+            } catch (HttpServerErrorException.ServiceUnavailable | HttpClientErrorException.TooManyRequests e) {
+                // the owner is up but cannot reach the upstream either; fetching here would only add upstream load
+                throw new UpstreamUnavailableException("Cluster member " + owner + " cannot fetch " + key + " right now",
+                        retryAfter(e));
+            } catch (RestClientResponseException e) {
+                throw new ExternalApiException("Cluster member " + owner + " answered " + e.getStatusCode().value() + " for " + key, e);
+            }
+            if (weather == null) {
+                fallbackRequests.increment();
+                weather = localFetch.get();
+            }
+            nearCache.put(key, weather);
+            return weather;
+        });
+    }
+
+    private static Duration retryAfter(RestClientResponseException e) {
+        String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER) : null;
+        try {
+            return retryAfter != null ? Duration.ofSeconds(Math.max(1, Long.parseLong(retryAfter.trim()))) : DEFAULT_RETRY_AFTER;
+        } catch (NumberFormatException ex) {
+            return DEFAULT_RETRY_AFTER;
+        }
+    }
+
+    /**
+     * Observation history of a key owned by another instance, which is the only member that records it. Unlike
+     * weather lookups there is nothing to fall back to locally, so an unreachable owner is reported as such.
+     */
+    public WeatherHistoryDTO historyFromOwner(String city, Instant from, Instant to, boolean samples) {
+        String key = cityKeys.keyFor(city);
+        String owner = ring.ownerOf(key);
+        URI uri = UriComponentsBuilder.fromHttpUrl(owner + HISTORY_PATH)
+                .queryParam("key", key)
+                .queryParamIfPresent("from", Optional.ofNullable(from))
+                .queryParamIfPresent("to", Optional.ofNullable(to))
+                .queryParam("samples", samples)
+                .encode()
+                .build()
+                .toUri();
+        try {
+            return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(peerHeaders), WeatherHistoryDTO.class).getBody();
+        } catch (HttpClientErrorException.BadRequest e) {
+            throw new InvalidInputException("Invalid history query for " + city);
+        } catch (RestClientException e) {
+            throw new ExternalApiException("Cluster member " + owner + " holding the history of " + key + " failed", e);
+        }
+    }
+
+    /**
+     * Runs a request that a peer forwarded here. It is answered locally even if this instance's view of the
+     * ring disagrees, so two instances with different member lists cannot forward a key back and forth.
+     */
+    public <T> T serveForPeer(Supplier<T> request) {
+        peerRequests.increment();
+        servingPeer.set(true);
+        try {
+            return request.get();
+        } finally {
+            servingPeer.remove();
+        }
+    }
+
+    /**
+     * Takes over the entries a previous owner handed off in one batch.
+     *
+     * @return how many were accepted
+     */
+    public int acceptHandoffs(Map<String, WeatherResponseDTO> entries) {
+        int accepted = 0;
+        for (Map.Entry<String, WeatherResponseDTO> entry : entries.entrySet()) {
+            if (acceptHandoff(entry.getKey(), entry.getValue())) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Takes over an entry handed off by a previous owner. Entries this instance does not own are refused,
+     * since they would never be read from weatherCache here, and so are entries without a fetchedAt, fetched
+     * further ahead than {@link #HANDOFF_CLOCK_SKEW} (which would win every {@code putIfNewer} and get a full
+     * TTL) or longer ago than {@code weather.cache.ttl}.
+     */
+    boolean acceptHandoff(String key, WeatherResponseDTO weather) {
+        if (!enabled || weather == null || !self.equals(ring.ownerOf(cityKeys.keyFor(key)))) {
+            return false;
+        }
+        Instant fetchedAt = weather.getFetchedAt();
+        Instant now = Instant.now();
+        if (fetchedAt == null || fetchedAt.isAfter(now.plus(HANDOFF_CLOCK_SKEW)) || fetchedAt.isBefore(now.minus(handoffMaxAge))) {
+            log.debug("Refused hand-off of {} fetched at {}", key, fetchedAt);
+            return false;
+        }
+        weatherCache.putIfNewer(key, weather);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${weather.cluster.members-refresh-interval:PT10S}")
+    public void reloadMembers() {
+        if (enabled) {
+            updateMembers(currentMembers());
+        }
+    }
+
+    /**
+     * Rebuilds the ring when the members changed and rebalances. The first call also rebalances, which hands
+     * off entries restored from a snapshot that another instance owns. The hand-offs are sent in one batch per
+     * owner on the hand-off threads, so an unreachable owner does not hold up the shared scheduler thread.
+     */
+    synchronized void updateMembers(List<String> members) {
+        ConsistentHashRing current = ring;
+        if (current.getMembers().equals(members) && rebalanced) {
+            return;
+        }
+        if (!current.getMembers().equals(members)) {
+            log.info("Cluster members changed from {} to {}", current.getMembers(), members);
+            ring = new ConsistentHashRing(members, virtualNodes);
+        }
+        rebalance();
+        rebalanced = true;
+    }
+
+    private void rebalance() {
+        ConsistentHashRing current = ring;
+        Map<String, Map<String, WeatherResponseDTO>> batches = new HashMap<>();
+        for (String key : weatherCache.keys()) {
+            String owner = current.ownerOf(key);
+            if (owner.equals(self)) {
+                continue;
+            }
+            WeatherResponseDTO weather = weatherCache.peek(key);
+            if (weather != null) {
+                batches.computeIfAbsent(owner, member -> new HashMap<>()).put(key, weather);
+            }
+            weatherCache.evict(key);
+        }
+        for (String key : List.copyOf(nearCache.asMap().keySet())) {
+            WeatherResponseDTO weather = nearCache.getIfPresent(key);
+            if (self.equals(current.ownerOf(key))) {
+                if (weather != null) {
+                    weatherCache.putIfNewer(key, weather);
+                }
+                nearCache.invalidate(key);
+            }
+        }
+        batches.forEach((owner, entries) -> handoffExecutor.execute(() -> handOff(owner, entries)));
+    }
+
+    private void handOff(String owner, Map<String, WeatherResponseDTO> entries) {
+        try {
+            Integer accepted = restTemplate.exchange(owner + WEATHER_PATH, HttpMethod.PUT,
+                    new HttpEntity<>(entries, peerHeaders), Integer.class).getBody();
+            int handedOff = accepted != null ? accepted : 0;
+            handoffs.increment(handedOff);
+            log.info("Handed {} of {} weatherCache entries to their new owner {}", handedOff, entries.size(), owner);
+        } catch (RuntimeException e) {
+            log.debug("Hand-off of {} entries to {} failed, the owner will fetch them again: {}", entries.size(), owner, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        handoffExecutor.shutdownNow();
+    }
+
+    private List<String> currentMembers() {
+        List<String> members = new ArrayList<>(staticMembers);
+        if (membersFile != null) {
+            try {
+                members.addAll(parseMembers(Files.readAllLines(membersFile, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                // keep the current file members rather than shrinking the ring on a transient read error
+                log.warn("Could not read cluster members file {}: {}", membersFile, e.getMessage());
+                if (ring != null) {
+                    return ring.getMembers();
+                }
+            }
+        }
+        members.add(self);
+        return List.copyOf(new TreeSet<>(members));
+    }
+
+    private static List<String> parseMembers(List<String> lines) {
+        List<String> members = new ArrayList<>();
+        for (String line : lines) {
+            String member = normalize(line);
+            if (!member.isEmpty() && !member.startsWith("#")) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    private static String normalize(String member) {
+        String trimmed = member.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("weather.cluster.requests")
+                .description("Lookups of keys owned elsewhere by how they were answered, and lookups served for peers")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+}
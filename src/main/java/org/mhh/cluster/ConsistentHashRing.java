@@ -0,0 +1,76 @@
+package org.mhh.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring: each member is placed at {@code virtualNodes} points, and a key belongs to the
+ * member at the first point at or after the key's hash. Adding or removing one of {@code n} members moves only
+ * about {@code 1/n} of the keys, all of them to or from that member.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(List<String> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one member");
+        }
+        this.members = List.copyOf(members);
+        int size = members.size() * virtualNodes;
+        long[] hashes = new long[size];
+        int[] order = new int[size];
+        int next = 0;
+        for (int m = 0; m < members.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[next++] = hash(members.get(m) + "#" + v);
+            }
+        }
+        // sort the points and keep each point's member alongside
+        Long[] sorted = new Long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = (long) i;
+        }
+        Arrays.sort(sorted, (a, b) -> Long.compare(hashes[a.intValue()], hashes[b.intValue()]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            int index = sorted[i].intValue();
+            points[i] = hashes[index];
+            owners[i] = members.get(index / virtualNodes);
+        }
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public String ownerOf(String key) {
+        long hash = hash(key);
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar keys spread evenly.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb53fe63a9ca6L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,99 @@
+package org.mhh.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhh.cache.AdaptiveTtl;
+import org.mhh.cache.FetchedAtExpiry;
+import org.mhh.service.WeatherService;
+import org.mhh.upstream.UpstreamPriority;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class CacheConfiguration {
+
+    public static final String WEATHER_CACHE = "weatherCache";
+    public static final String UNKNOWN_CITY_CACHE = "unknownCityCache";
+
+    /**
+     * Bounded negative cache for cities the upstream does not know. It is short-lived so a city that starts
+     * resolving upstream is picked up again quickly.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> unknownCityCacheCustomizer(
+            @Value("${weather.cache.unknown-city.maximum-size:10000}") long maximumSize,
+            @Value("${weather.cache.unknown-city.ttl:5m}") Duration ttl) {
+        return cacheManager -> cacheManager.registerCustomCache(UNKNOWN_CITY_CACHE, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build());
+    }
+
+    /**
+     * Entries expire {@code weather.cache.ttl} after they were fetched upstream, or the per-key TTL chosen by
+     * {@link AdaptiveTtl} when that is enabled.
+     * <p>
+     * Refresh-ahead mode: entries older than the soft TTL are still served, and Caffeine reloads them in
+     * the background. A failed reload keeps the old value, so stale data is served until the hard TTL.
+     * Background reloads queue behind client-facing misses for upstream quota, on
+     * {@link #weatherCacheRefreshExecutor} rather than the common pool, since they may wait there for a while.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> weatherCacheCustomizer(
+            ObjectProvider<WeatherService> weatherService,
+            ObjectProvider<AdaptiveTtl> adaptiveTtl,
+            @Qualifier("weatherCacheRefreshExecutor") Executor refreshExecutor,
+            @Value("${weather.cache.maximum-size:500}") long maximumSize,
+            @Value("${weather.cache.ttl:10m}") Duration ttl,
+            @Value("${weather.cache.refresh-ahead.enabled:false}") boolean refreshAhead,
+            @Value("${weather.cache.refresh-ahead.soft-ttl:2m}") Duration softTtl,
+            @Value("${weather.cache.refresh-ahead.hard-ttl:30m}") Duration hardTtl) {
+        return cacheManager -> {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .recordStats();
+            if (refreshAhead) {
+                cacheManager.registerCustomCache(WEATHER_CACHE, builder
+                        .expireAfter(new FetchedAtExpiry(hardTtl))
+                        .refreshAfterWrite(softTtl)
+                        .executor(refreshExecutor)
+                        .build(new CacheLoader<Object, Object>() {
+                            @Override
+                            public Object load(Object key) {
+                                return weatherService.getObject().fetchWeatherData((String) key, UpstreamPriority.INTERACTIVE);
+                            }
+
+                            @Override
+                            public Object reload(Object key, Object oldValue) {
+                                return weatherService.getObject().fetchWeatherData((String) key, UpstreamPriority.BACKGROUND);
+                            }
+                        }));
+            } else {
+                AdaptiveTtl ttlPolicy = adaptiveTtl.getIfAvailable();
+                cacheManager.registerCustomCache(WEATHER_CACHE, builder
+                        .expireAfter(ttlPolicy != null ? new FetchedAtExpiry(ttlPolicy::ttlFor) : new FetchedAtExpiry(ttl))
+                        .build());
+            }
+        };
+    }
+
+    /**
+     * Runs refresh-ahead reloads. The pool size bounds how many reloads wait for upstream quota at once.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService weatherCacheRefreshExecutor(ServingThreads servingThreads,
+                                                       @Value("${weather.cache.refresh-ahead.max-concurrency:4}") int maxConcurrency) {
+        return Executors.newFixedThreadPool(maxConcurrency, servingThreads.threadFactory("weather-cache-refresh-"));
+    }
+}
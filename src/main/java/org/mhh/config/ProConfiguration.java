@@ -1,13 +1,70 @@
 package org.mhh.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class ProConfiguration {
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient upstreamHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(upstreamHttpClient));
+    }
+
+    /**
+     * Pooled, keep-alive HTTP client for the upstream weather API. Every wait is bounded: leasing a pooled
+     * connection, connecting, and reading the response, so a slow upstream cannot pin request threads.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient upstreamHttpClient(
+            @Value("${openweathermap.http.max-connections:200}") int maxConnections,
+            @Value("${openweathermap.http.max-connections-per-route:100}") int maxConnectionsPerRoute,
+            @Value("${openweathermap.http.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${openweathermap.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${openweathermap.http.pool-acquire-timeout:1s}") Duration poolAcquireTimeout,
+            @Value("${openweathermap.http.idle-eviction:30s}") Duration idleEviction,
+            @Value("${openweathermap.http.connection-ttl:5m}") Duration connectionTtl) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .build())
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    /**
+     * Runs parallel upstream fetches (batch fan-out). The pool size is the concurrency limit, also when the
+     * threads are virtual.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService weatherFetchExecutor(ServingThreads servingThreads,
+                                                @Value("${weather.batch.max-concurrency:16}") int maxConcurrency) {
+        return Executors.newFixedThreadPool(maxConcurrency, servingThreads.threadFactory("weather-fetch-"));
     }
 }
@@ -0,0 +1,43 @@
+package org.mhh.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.provider.OpenWeatherMapProvider;
+import org.mhh.provider.WeatherProvider;
+import org.mhh.provider.WeatherProviders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * The {@link WeatherProvider}s behind {@link WeatherProviders}, in the order they are tried. Another backend is
+ * added by declaring one more {@code WeatherProvider} bean with its {@code @Order}.
+ */
+@Configuration
+public class ProviderConfiguration {
+
+    @Bean
+    @Order(0)
+    public WeatherProvider primaryWeatherProvider(RestTemplate restTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                                  @Value("${openweathermap.api.url}") String apiUrl,
+                                                  @Value("${openweathermap.api.key}") String apiKey,
+                                                  @Value("${openweathermap.api.units}") String apiUnits) {
+        return new OpenWeatherMapProvider("primary", restTemplate, objectMapper, meterRegistry, apiUrl, apiKey, apiUnits);
+    }
+
+    /**
+     * A second OpenWeatherMap-compatible endpoint, used for hedged requests and when the primary fails.
+     */
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(name = "weather.providers.secondary.enabled", havingValue = "true")
+    public WeatherProvider secondaryWeatherProvider(RestTemplate restTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                                    @Value("${weather.providers.secondary.url}") String apiUrl,
+                                                    @Value("${weather.providers.secondary.key:${openweathermap.api.key}}") String apiKey,
+                                                    @Value("${openweathermap.api.units}") String apiUnits) {
+        return new OpenWeatherMapProvider("secondary", restTemplate, objectMapper, meterRegistry, apiUrl, apiKey, apiUnits);
+    }
+}
@@ -0,0 +1,50 @@
+package org.mhh.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Chooses the threads that serve requests and call the upstream.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true} on Java 21 or later, Spring Boot runs Tomcat's request
+ * handling on virtual threads, and the service's own upstream and fan-out executors use virtual threads as
+ * well. A request blocked on an upstream miss then holds a virtual thread of a few kilobytes rather than one
+ * of the 200 platform threads, so concurrent misses are bounded by the upstream bulkhead and HTTP connection
+ * pool instead of the thread count. On Java 17 the property is ignored and everything stays on platform threads.
+ */
+@Component
+public class ServingThreads {
+
+    private final boolean virtual;
+
+    @Autowired
+    public ServingThreads(Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment));
+    }
+
+    public ServingThreads(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Daemon threads named {@code prefix} plus a counter: virtual in virtual-thread mode, platform otherwise.
+     */
+    public ThreadFactory threadFactory(String prefix) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,72 @@
+package org.mhh.controller;
+
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.dto.WeatherHistoryDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.history.ObservationHistory;
+import org.mhh.service.WeatherService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Endpoints that cluster members call on each other: lookups and history queries forwarded to the key's owner, and the entries a
+ * previous owner hands over in one batch after a membership change, answered with how many were accepted.
+ * Requests without the shared {@code weather.cluster.secret} in {@link ClusterRouting#SECRET_HEADER} are
+ * rejected with 403.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+@ConditionalOnProperty(name = "weather.cluster.enabled", havingValue = "true")
+public class ClusterController {
+
+    private final WeatherService weatherService;
+    private final ObservationHistory observationHistory;
+    private final ClusterRouting clusterRouting;
+
+    public ClusterController(WeatherService weatherService, ObservationHistory observationHistory, ClusterRouting clusterRouting) {
+        this.weatherService = weatherService;
+        this.observationHistory = observationHistory;
+        this.clusterRouting = clusterRouting;
+    }
+
+    @GetMapping("/weather")
+    public ResponseEntity<WeatherResponseDTO> getWeather(@RequestHeader(name = ClusterRouting.SECRET_HEADER, required = false) String secret,
+                                                         @RequestParam String key) {
+        if (!clusterRouting.isTrustedPeer(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(clusterRouting.serveForPeer(() -> weatherService.getWeatherData(key)));
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<WeatherHistoryDTO> getHistory(@RequestHeader(name = ClusterRouting.SECRET_HEADER, required = false) String secret,
+                                                        @RequestParam String key,
+                                                        @RequestParam(required = false) Instant from,
+                                                        @RequestParam(required = false) Instant to,
+                                                        @RequestParam(defaultValue = "false") boolean samples) {
+        if (!clusterRouting.isTrustedPeer(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(observationHistory.query(key, from, to, samples));
+    }
+
+    @PutMapping("/weather")
+    public ResponseEntity<Integer> handOff(@RequestHeader(name = ClusterRouting.SECRET_HEADER, required = false) String secret,
+                                           @RequestBody Map<String, WeatherResponseDTO> entries) {
+        if (!clusterRouting.isTrustedPeer(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(clusterRouting.acceptHandoffs(entries));
+    }
+}
@@ -0,0 +1,123 @@
+package org.mhh.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhh.dto.WeatherResponseDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes {@link WeatherResponseDTO} responses as JSON, CBOR or Smile from bytes encoded once per cached entry.
+ * <p>
+ * Cached DTOs are shared between requests and never modified, so the encoded bytes are kept in a side cache
+ * keyed by the DTO instance (weak keys, compared by identity). An entry goes away with the weatherCache entry
+ * it belongs to, and a refreshed entry is a new instance that gets encoded again. Spring Boot registers this
+ * converter ahead of the Jackson converters, which still handle every other response type.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.response.pre-encoded.enabled", havingValue = "true")
+public class PreEncodedWeatherHttpMessageConverter extends AbstractHttpMessageConverter<WeatherResponseDTO> {
+
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    private final List<MediaType> mediaTypes;
+    private final ObjectMapper[] objectMappers;
+    // per DTO, the encoding for each of mediaTypes, published safely to concurrent requests
+    private final Cache<WeatherResponseDTO, AtomicReferenceArray<byte[]>> encoded;
+
+    @Autowired
+    public PreEncodedWeatherHttpMessageConverter(ObjectMapper objectMapper,
+                                                 Jackson2ObjectMapperBuilder objectMapperBuilder,
+                                                 @Value("${weather.cache.maximum-size:500}") long maximumSize) {
+        this(List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, APPLICATION_SMILE),
+                new ObjectMapper[]{
+                        objectMapper,
+                        objectMapperBuilder.factory(new CBORFactory()).build(),
+                        objectMapperBuilder.factory(new SmileFactory()).build()},
+                maximumSize);
+    }
+
+    PreEncodedWeatherHttpMessageConverter(List<MediaType> mediaTypes, ObjectMapper[] objectMappers, long maximumSize) {
+        super(mediaTypes.toArray(MediaType[]::new));
+        this.mediaTypes = mediaTypes;
+        this.objectMappers = objectMappers;
+        // stale copies are memoized by WeatherFreshness, so allow one of each per weatherCache entry
+        this.encoded = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(2 * maximumSize)
+                .build();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return WeatherResponseDTO.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected WeatherResponseDTO readInternal(Class<? extends WeatherResponseDTO> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Weather responses are write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(WeatherResponseDTO weatherData, MediaType contentType) {
+        return (long) encode(weatherData, contentType).length;
+    }
+
+    @Override
+    protected void writeInternal(WeatherResponseDTO weatherData, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(encode(weatherData, outputMessage.getHeaders().getContentType()));
+    }
+
+    /**
+     * Returns the cached encoding of the entry, encoding it on first use. Two requests racing on the same
+     * entry may both encode it; the first result stored is the one both return.
+     */
+    public byte[] encode(WeatherResponseDTO weatherData, MediaType contentType) {
+        int format = formatOf(contentType);
+        AtomicReferenceArray<byte[]> formats = encoded.get(weatherData, key -> new AtomicReferenceArray<>(objectMappers.length));
+        byte[] bytes = formats.get(format);
+        if (bytes == null) {
+            try {
+                bytes = objectMappers[format].writeValueAsBytes(weatherData);
+            } catch (IOException e) {
+                throw new HttpMessageNotWritableException("Could not encode weather response: " + e.getMessage(), e);
+            }
+            if (!formats.compareAndSet(format, null, bytes)) {
+                bytes = formats.get(format);
+            }
+        }
+        return bytes;
+    }
+
+    private int formatOf(MediaType contentType) {
+        if (contentType != null) {
+            for (int i = 0; i < mediaTypes.size(); i++) {
+                if (mediaTypes.get(i).equalsTypeAndSubtype(contentType)) {
+                    return i;
+                }
+            }
+        }
+        return 0;
+    }
+}
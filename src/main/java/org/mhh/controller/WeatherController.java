@@ -1,14 +1,35 @@
 package org.mhh.controller;
 
+import org.mhh.cache.HotCityTracker;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.dto.CitySuggestionDTO;
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.WeatherHistoryDTO;
 import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.geo.GeoGrid;
+import org.mhh.history.ObservationHistory;
+import org.mhh.service.WeatherBatchService;
 import org.mhh.service.WeatherService;
+import org.mhh.service.WeatherSubscriptionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/weather")
@@ -16,14 +37,142 @@ public class WeatherController {
 
     private static final Logger log = LoggerFactory.getLogger(WeatherController.class); // لاگر برای کنترلر
     private final WeatherService weatherService;
+    private final WeatherBatchService weatherBatchService;
+    private final WeatherSubscriptionService weatherSubscriptionService;
+    private final WeatherFreshness weatherFreshness;
+    private final WeatherCacheAccess weatherCache;
+    private static final int MAX_SUGGESTIONS = 50;
+    private final HotCityTracker hotCityTracker;
+    private final CityGazetteer cityGazetteer;
+    private final GeoGrid geoGrid;
+    private final ObservationHistory observationHistory;
+    private final ClusterRouting clusterRouting;
 
-    public WeatherController(WeatherService weatherService) {
+    public WeatherController(WeatherService weatherService, WeatherBatchService weatherBatchService,
+                             WeatherSubscriptionService weatherSubscriptionService, WeatherFreshness weatherFreshness, WeatherCacheAccess weatherCache,
+                             HotCityTracker hotCityTracker, CityGazetteer cityGazetteer, GeoGrid geoGrid,
+                             ObservationHistory observationHistory, ClusterRouting clusterRouting) {
         this.weatherService = weatherService;
+        this.weatherBatchService = weatherBatchService;
+        this.weatherSubscriptionService = weatherSubscriptionService;
+        this.weatherFreshness = weatherFreshness;
+        this.weatherCache = weatherCache;
+        this.hotCityTracker = hotCityTracker;
+        this.cityGazetteer = cityGazetteer;
+        this.geoGrid = geoGrid;
+        this.observationHistory = observationHistory;
+        this.clusterRouting = clusterRouting;
     }
 
     @GetMapping
     public ResponseEntity<WeatherResponseDTO> getWeatherForecast(@RequestParam String city) {
-        log.info("Received request for city: {}", city);
-        WeatherResponseDTO weatherData = weatherService.getWeatherData(city);
-        return ResponseEntity.ok(weatherData);    }
-}
\ No newline at end of file
+        log.debug("Received request for city: {}", city);
+        requireCityName(city);
+        hotCityTracker.recordAccess(city);
+        WeatherResponseDTO weatherData = weatherFreshness.markIfStale(weatherService.getWeatherData(city));
+        // a matching If-None-Match is answered with 304 by Spring MVC before the body is serialized
+        return ResponseEntity.ok()
+                .cacheControl(cacheControlFor(city, weatherData))
+                .eTag(etagFor(weatherData))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(weatherData);
+    }
+
+    /**
+     * Coordinate lookups are snapped onto the geohash grid first, so nearby positions share a cache entry.
+     */
+    @GetMapping(params = {"lat", "lon"})
+    public ResponseEntity<WeatherResponseDTO> getWeatherForecastAt(@RequestParam double lat, @RequestParam double lon) {
+        String cellKey = geoGrid.cellKey(lat, lon);
+        log.debug("Received request for position {},{} in cell {}", lat, lon, cellKey);
+        hotCityTracker.recordAccess(cellKey);
+        WeatherResponseDTO weatherData = weatherFreshness.markIfStale(weatherService.getWeatherData(cellKey));
+        return ResponseEntity.ok()
+                .cacheControl(cacheControlFor(cellKey, weatherData))
+                .eTag(etagFor(weatherData))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(weatherData);
+    }
+
+    @GetMapping("/batch")
+    public ResponseEntity<List<CityWeatherResultDTO>> getWeatherForecasts(@RequestParam List<String> cities) {
+        log.debug("Received batch request for {} cities", cities.size());
+        cities.forEach(WeatherController::requireCityName);
+        cities.forEach(hotCityTracker::recordAccess);
+        return ResponseEntity.ok(weatherBatchService.getWeatherData(cities));
+    }
+
+    /**
+     * Server-Sent Events stream of weather updates for the given cities, instead of polling the main endpoint.
+     */
+    @GetMapping("/subscribe")
+    public SseEmitter subscribe(@RequestParam List<String> cities) {
+        log.debug("Received subscription for {} cities", cities.size());
+        cities.forEach(WeatherController::requireCityName);
+        cities.forEach(hotCityTracker::recordAccess);
+        return weatherSubscriptionService.subscribe(cities);
+    }
+
+    /**
+     * Recorded observations of a city, answered from memory without an upstream call. Defaults to the last day.
+     * In cluster mode only the city's owner records it, so the query is forwarded there.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<WeatherHistoryDTO> getWeatherHistory(@RequestParam String city,
+                                                               @RequestParam(required = false) Instant from,
+                                                               @RequestParam(required = false) Instant to,
+                                                               @RequestParam(defaultValue = "false") boolean samples) {
+        log.debug("Received history request for city: {}", city);
+        requireCityName(city);
+        return ResponseEntity.ok(clusterRouting.isLocal(city)
+                ? observationHistory.query(city, from, to, samples)
+                : clusterRouting.historyFromOwner(city, from, to, samples));
+    }
+
+    @GetMapping("/cities")
+    public ResponseEntity<List<CitySuggestionDTO>> getCitySuggestions(@RequestParam String prefix,
+                                                                      @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isBlank()) {
+            throw new InvalidInputException("Prefix cannot be empty.");
+        }
+        return ResponseEntity.ok(cityGazetteer.findByPrefix(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
+    }
+
+    /**
+     * Cell keys ({@code geo:<geohash>}) are only built from lat/lon at the configured precision; taking them as a
+     * city name would let clients pick any precision and create arbitrary cache keys.
+     */
+    private static void requireCityName(String city) {
+        if (GeoGrid.isCellKey(city)) {
+            throw new InvalidInputException("Invalid city name: " + city);
+        }
+    }
+
+    /**
+     * Clients may cache the response for as long as the entry stays in weatherCache, and in refresh-ahead mode
+     * only until it turns stale.
+     */
+    private CacheControl cacheControlFor(String city, WeatherResponseDTO weatherData) {
+        Duration maxAge = weatherCache.remainingTtl(city);
+        if (maxAge == null) {
+            return CacheControl.noCache();
+        }
+        Duration freshness = weatherFreshness.remainingFreshness(weatherData);
+        if (freshness != null && freshness.compareTo(maxAge) < 0) {
+            maxAge = freshness;
+        }
+        return CacheControl.maxAge(maxAge.toSeconds(), TimeUnit.SECONDS).cachePublic();
+    }
+
+    /**
+     * A cached entry only changes when it is fetched again, so its fetch time identifies the representation
+     * without hashing or serializing it.
+     */
+    private static String etagFor(WeatherResponseDTO weatherData) {
+        Instant fetchedAt = weatherData.getFetchedAt();
+        if (fetchedAt == null) {
+            return null;
+        }
+        return "W/\"" + Long.toHexString(fetchedAt.toEpochMilli()) + (weatherData.isStale() ? "-stale" : "") + "\"";
+    }
+}
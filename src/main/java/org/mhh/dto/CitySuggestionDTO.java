@@ -0,0 +1,15 @@
+package org.mhh.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CitySuggestionDTO {
+
+    private int id;
+    private String name;
+    private String country;
+}
@@ -0,0 +1,21 @@
+package org.mhh.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a batch response: either the weather for the requested city or the error it produced.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CityWeatherResultDTO {
+
+    private String city;
+    private int status;
+    private WeatherResponseDTO weather;
+    private ErrorResponseDTO error;
+}
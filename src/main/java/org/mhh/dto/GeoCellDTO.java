@@ -0,0 +1,18 @@
+package org.mhh.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Geohash grid cell a coordinate lookup was snapped to; latitude and longitude are the cell's center.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeoCellDTO {
+
+    private String geohash;
+    private double latitude;
+    private double longitude;
+}
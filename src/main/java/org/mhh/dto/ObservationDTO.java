@@ -0,0 +1,21 @@
+package org.mhh.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One recorded upstream observation of a city's weather.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObservationDTO {
+
+    private Instant observedAt;
+    private double temperature;
+    private int humidity;
+    private double windSpeed;
+}
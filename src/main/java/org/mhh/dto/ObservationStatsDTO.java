@@ -0,0 +1,18 @@
+package org.mhh.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Minimum, maximum and average of one measurement over a history window.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObservationStatsDTO {
+
+    private double min;
+    private double max;
+    private double avg;
+}
@@ -0,0 +1,29 @@
+package org.mhh.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Observations recorded for a city between {@code from} and {@code to}: aggregates always, and the samples
+ * themselves when asked for. The aggregates are absent when nothing was recorded in the window.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WeatherHistoryDTO {
+
+    private String cityName;
+    private Instant from;
+    private Instant to;
+    private int count;
+    private ObservationStatsDTO temperature;
+    private ObservationStatsDTO humidity;
+    private ObservationStatsDTO windSpeed;
+    private List<ObservationDTO> samples;
+}
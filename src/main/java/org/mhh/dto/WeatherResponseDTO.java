@@ -1,8 +1,12 @@
 package org.mhh.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
+
+import java.time.Instant;
 
 @Data // ۱. شامل @Getter, @Setter, @ToString, @EqualsAndHashCode, @RequiredArgsConstructor
 @NoArgsConstructor
@@ -14,4 +18,22 @@ public class WeatherResponseDTO {
     private String description;
     private Integer humidity;
     private Double windSpeed;
-}
\ No newline at end of file
+    // when the data was fetched from the upstream; used to tell cached and stale entries apart
+    private Instant fetchedAt;
+    // true when served from weatherCache past its soft TTL while a refresh is pending or failing
+    @With
+    private boolean stale;
+    // grid cell a lat/lon lookup was snapped to; absent for lookups by city name
+    @With
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private GeoCellDTO cell;
+
+    public WeatherResponseDTO(String cityName, Double temperature, String description, Integer humidity, Double windSpeed) {
+        this(cityName, temperature, description, humidity, windSpeed, null, false);
+    }
+
+    public WeatherResponseDTO(String cityName, Double temperature, String description, Integer humidity, Double windSpeed,
+                              Instant fetchedAt, boolean stale) {
+        this(cityName, temperature, description, humidity, windSpeed, fetchedAt, stale, null);
+    }
+}
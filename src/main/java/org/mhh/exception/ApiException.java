@@ -8,4 +8,8 @@ public class ApiException extends RuntimeException {
 
     public ApiException(String message, Throwable cause) {
         super(message, cause);    }
+
+    protected ApiException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
\ No newline at end of file
@@ -13,4 +13,16 @@ public class CityNotFoundException extends ApiException {
     public CityNotFoundException(String city, Throwable cause) {
         super("Weather data not found for city: " + city, cause);
     }
+
+    private CityNotFoundException(String city, boolean writableStackTrace) {
+        super("Weather data not found for city: " + city, writableStackTrace);
+    }
+
+    /**
+     * For answers from the negative cache: the city is already known to be missing, so a stack trace
+     * would only cost time.
+     */
+    public static CityNotFoundException withoutStackTrace(String city) {
+        return new CityNotFoundException(city, false);
+    }
 }
\ No newline at end of file
@@ -13,4 +13,8 @@ public class ExternalApiException extends ApiException {
     public ExternalApiException(String message, Throwable cause) {
         super("Error communicating with external weather service: " + message, cause);
     }
+
+    protected ExternalApiException(String message, boolean writableStackTrace) {
+        super("Error communicating with external weather service: " + message, writableStackTrace);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package org.mhh.exception;
+
+/**
+ * The upstream answered that our request quota is exceeded (HTTP 429).
+ */
+public class UpstreamQuotaExceededException extends ExternalApiException {
+
+    public UpstreamQuotaExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
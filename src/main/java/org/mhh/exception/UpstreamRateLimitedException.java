@@ -0,0 +1,13 @@
+package org.mhh.exception;
+
+import java.time.Duration;
+
+/**
+ * The upstream call was not made because the request quota is exhausted and the wait for it would be too long.
+ */
+public class UpstreamRateLimitedException extends UpstreamUnavailableException {
+
+    public UpstreamRateLimitedException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+}
@@ -0,0 +1,26 @@
+package org.mhh.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+/**
+ * The upstream call was not made because the service protects itself or the upstream, e.g. an open circuit
+ * breaker or a full bulkhead. Thrown without a stack trace, since during an incident it is an expected and
+ * frequent outcome.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class UpstreamUnavailableException extends ExternalApiException {
+
+    private final Duration retryAfter;
+
+    public UpstreamUnavailableException(String message, Duration retryAfter) {
+        super(message, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,120 @@
+package org.mhh.gazetteer;
+
+import org.mhh.dto.CitySuggestionDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * In-memory index of the bundled city list, used to resolve names and aliases to a stable city id and to
+ * answer prefix (autocomplete) queries.
+ * <p>
+ * Every folded name and alias is kept in one sorted array with a parallel array pointing at its city, so an
+ * exact lookup is a binary search and a prefix query is a binary search followed by a scan of the matching
+ * range, without per-node objects as a trie would need.
+ */
+@Component
+public class CityGazetteer {
+
+    private final int[] ids;
+    private final String[] names;
+    private final String[] countries;
+    // folded names and aliases, sorted, and the index into ids/names/countries of the city each one belongs to
+    private final String[] keys;
+    private final int[] cityOfKey;
+
+    public CityGazetteer(@Value("${weather.gazetteer.file:classpath:cities.tsv}") Resource citiesFile) {
+        List<String[]> rows = readRows(citiesFile);
+        ids = new int[rows.size()];
+        names = new String[rows.size()];
+        countries = new String[rows.size()];
+        List<String> allKeys = new ArrayList<>();
+        List<Integer> allCities = new ArrayList<>();
+        for (int city = 0; city < rows.size(); city++) {
+            String[] row = rows.get(city);
+            ids[city] = Integer.parseInt(row[0].trim());
+            names[city] = CityNames.clean(row[1]);
+            countries[city] = row.length > 2 ? row[2].trim() : "";
+            allKeys.add(CityNames.fold(row[1]));
+            allCities.add(city);
+            if (row.length > 3) {
+                for (String alias : row[3].split(",")) {
+                    String folded = CityNames.fold(alias);
+                    if (!folded.isEmpty()) {
+                        allKeys.add(folded);
+                        allCities.add(city);
+                    }
+                }
+            }
+        }
+        Integer[] order = new Integer[allKeys.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(allKeys::get));
+        keys = new String[order.length];
+        cityOfKey = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = allKeys.get(order[i]);
+            cityOfKey[i] = allCities.get(order[i]);
+        }
+    }
+
+    /**
+     * The canonical name of the city a folded name or alias refers to, or {@code null} for an unknown name.
+     */
+    public String canonicalName(String foldedName) {
+        int index = Arrays.binarySearch(keys, foldedName);
+        return index >= 0 ? names[cityOfKey[index]] : null;
+    }
+
+    /**
+     * Up to {@code limit} cities with a name or alias starting with {@code prefix}, in alphabetical order of the
+     * matching name.
+     */
+    public List<CitySuggestionDTO> findByPrefix(String prefix, int limit) {
+        String folded = CityNames.fold(prefix);
+        List<CitySuggestionDTO> matches = new ArrayList<>(Math.min(limit, 16));
+        if (folded.isEmpty()) {
+            return matches;
+        }
+        int index = Arrays.binarySearch(keys, folded);
+        BitSet seen = new BitSet(ids.length);
+        for (int i = index >= 0 ? index : -index - 1; i < keys.length && matches.size() < limit && keys[i].startsWith(folded); i++) {
+            int city = cityOfKey[i];
+            if (!seen.get(city)) {
+                seen.set(city);
+                matches.add(new CitySuggestionDTO(ids[city], names[city], countries[city]));
+            }
+        }
+        return matches;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private static List<String[]> readRows(Resource citiesFile) {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(citiesFile.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    rows.add(line.split("\t"));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read city list " + citiesFile, e);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,62 @@
+package org.mhh.gazetteer;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Canonical forms of user-supplied city names.
+ */
+public final class CityNames {
+
+    private CityNames() {
+    }
+
+    /**
+     * Applies Unicode NFC, trims the name, drops leading and trailing punctuation ({@code "TEHRAN,"}) and collapses
+     * inner whitespace, keeping the original case.
+     */
+    public static String clean(String name) {
+        if (name == null) {
+            return "";
+        }
+        if (!Normalizer.isNormalized(name, Normalizer.Form.NFC)) {
+            name = Normalizer.normalize(name, Normalizer.Form.NFC);
+        }
+        int start = 0;
+        int end = name.length();
+        while (start < end && !Character.isLetterOrDigit(name.charAt(start))) {
+            start++;
+        }
+        while (end > start && !Character.isLetterOrDigit(name.charAt(end - 1))) {
+            end--;
+        }
+        StringBuilder cleaned = null;
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (cleaned == null && c == ' ' && !Character.isWhitespace(name.charAt(i + 1))) {
+                    continue; // a single space needs no copy
+                }
+                if (cleaned == null) {
+                    cleaned = new StringBuilder(end - start).append(name, start, i);
+                }
+                if (cleaned.charAt(cleaned.length() - 1) != ' ') {
+                    cleaned.append(' ');
+                }
+            } else if (cleaned != null) {
+                cleaned.append(c);
+            }
+        }
+        return cleaned != null ? cleaned.toString() : name.substring(start, end);
+    }
+
+    /**
+     * {@link #clean(String)} followed by locale-independent case folding, so "Tehran", " tehran " and "TEHRAN,"
+     * fold to the same string on every JVM (with a Turkish default locale {@code toLowerCase()} maps "I" to "ı").
+     */
+    public static String fold(String name) {
+        String folded = clean(name).toLowerCase(Locale.ROOT);
+        // "İ" lower-cases to "i" + COMBINING DOT ABOVE, which has no precomposed form
+        return folded.indexOf('̇') < 0 ? folded : folded.replace("i̇", "i");
+    }
+}
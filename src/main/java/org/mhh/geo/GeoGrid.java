@@ -0,0 +1,136 @@
+package org.mhh.geo;
+
+import org.mhh.dto.GeoCellDTO;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.gazetteer.CityNames;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Snaps coordinates onto a geohash grid, so that lookups from nearby positions share one weatherCache entry
+ * and one upstream call per cell.
+ * <p>
+ * A snapped position is looked up under the cache key {@code geo:<geohash>}, which goes through the same
+ * cache, coalescing and refresh path as a city name. {@link #parseCellKey(String)} turns such a key back into
+ * the cell, whose center is what the upstream is asked for.
+ */
+@Component
+public class GeoGrid {
+
+    public static final String CELL_KEY_PREFIX = "geo:";
+    public static final int MAX_PRECISION = 12;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private final int precision;
+
+    public GeoGrid(@Value("${weather.geo.precision:5}") int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("weather.geo.precision must be between 1 and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Cache key of the grid cell containing the given position.
+     */
+    public String cellKey(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new InvalidInputException("Latitude must be between -90 and 90.");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new InvalidInputException("Longitude must be between -180 and 180.");
+        }
+        return CELL_KEY_PREFIX + encode(latitude, longitude, precision);
+    }
+
+    /**
+     * Whether a user-supplied city name would fold to a cell key. Such names are refused, so cell keys are only
+     * built by {@link #cellKey(double, double)} at the configured precision.
+     */
+    public static boolean isCellKey(String city) {
+        return CityNames.fold(city).startsWith(CELL_KEY_PREFIX);
+    }
+
+    /**
+     * The cell behind a {@code geo:} cache key, or {@code null} when the key is not a cell key.
+     */
+    public static GeoCellDTO parseCellKey(String key) {
+        if (key == null || !key.startsWith(CELL_KEY_PREFIX)) {
+            return null;
+        }
+        return decode(key.substring(CELL_KEY_PREFIX.length()));
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        char[] hash = new char[precision];
+        boolean lonBit = true;
+        for (int i = 0; i < precision; i++) {
+            int index = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                if (lonBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (longitude >= mid) {
+                        index = index << 1 | 1;
+                        minLon = mid;
+                    } else {
+                        index <<= 1;
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (latitude >= mid) {
+                        index = index << 1 | 1;
+                        minLat = mid;
+                    } else {
+                        index <<= 1;
+                        maxLat = mid;
+                    }
+                }
+                lonBit = !lonBit;
+            }
+            hash[i] = BASE32.charAt(index);
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Center of the cell with the given geohash.
+     */
+    public static GeoCellDTO decode(String geohash) {
+        if (geohash.isEmpty() || geohash.length() > MAX_PRECISION) {
+            throw new InvalidInputException("Invalid geohash: " + geohash);
+        }
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        boolean lonBit = true;
+        for (int i = 0; i < geohash.length(); i++) {
+            int index = BASE32.indexOf(geohash.charAt(i));
+            if (index < 0) {
+                throw new InvalidInputException("Invalid geohash: " + geohash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = (index >> bit & 1) == 1;
+                if (lonBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (set) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                lonBit = !lonBit;
+            }
+        }
+        return new GeoCellDTO(geohash, (minLat + maxLat) / 2, (minLon + maxLon) / 2);
+    }
+}
@@ -0,0 +1,106 @@
+package org.mhh.history;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.dto.WeatherHistoryDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.service.UpstreamFetchListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * In-memory time series of every upstream result, per weatherCache key, so histories outlive the cache entries
+ * they came from.
+ * <p>
+ * Each key keeps its latest {@code max-samples-per-city} observations in an {@link ObservationSeries} of a few
+ * bytes per sample. A key that was not fetched for {@code retention} is dropped, and at most {@code max-cities}
+ * keys are kept, evicting the least recently fetched. Queries never see samples older than {@code retention}.
+ */
+@Component
+public class ObservationHistory implements UpstreamFetchListener {
+
+    private final CityKeyGenerator cityKeys;
+    private final int maxSamplesPerCity;
+    private final Duration retention;
+    private final Clock clock;
+    private final Cache<String, ObservationSeries> series;
+
+    @Autowired
+    public ObservationHistory(CityKeyGenerator cityKeys, MeterRegistry meterRegistry,
+                              @Value("${weather.history.max-cities:1000}") long maxCities,
+                              @Value("${weather.history.max-samples-per-city:2016}") int maxSamplesPerCity,
+                              @Value("${weather.history.retention:7d}") Duration retention) {
+        this(cityKeys, meterRegistry, maxCities, maxSamplesPerCity, retention, Clock.systemUTC());
+    }
+
+    ObservationHistory(CityKeyGenerator cityKeys, MeterRegistry meterRegistry, long maxCities, int maxSamplesPerCity,
+                       Duration retention, Clock clock) {
+        this.cityKeys = cityKeys;
+        this.maxSamplesPerCity = maxSamplesPerCity;
+        this.retention = retention;
+        this.clock = clock;
+        this.series = Caffeine.newBuilder()
+                .maximumSize(maxCities)
+                .expireAfterWrite(retention)
+                .build();
+        Gauge.builder("weather.history.cities", series, Cache::estimatedSize)
+                .description("Cities with recorded observations")
+                .register(meterRegistry);
+        Gauge.builder("weather.history.samples", this, ObservationHistory::sampleCount)
+                .description("Observations held in the history store")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onFetched(String cacheKey, WeatherResponseDTO weather) {
+        if (weather.getFetchedAt() == null) {
+            return;
+        }
+        // compute() rather than get() so every fetch counts as a write and restarts the key's retention
+        series.asMap().compute(cacheKey, (key, existing) -> {
+            ObservationSeries target = existing != null ? existing : new ObservationSeries(maxSamplesPerCity);
+            target.append(weather.getFetchedAt(), weather.getCityName(), weather.getTemperature(),
+                    weather.getHumidity(), weather.getWindSpeed());
+            return target;
+        });
+    }
+
+    /**
+     * Observations of the city between {@code from} and {@code to} (both inclusive); {@code to} defaults to now
+     * and {@code from} to one day before {@code to}.
+     */
+    public WeatherHistoryDTO query(String city, Instant from, Instant to, boolean includeSamples) {
+        String key = city == null ? "" : cityKeys.keyFor(city);
+        if (key.isEmpty()) {
+            throw new InvalidInputException("City name cannot be empty.");
+        }
+        Instant end = to != null ? to : clock.instant();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (start.isAfter(end)) {
+            throw new InvalidInputException("'from' must not be after 'to'.");
+        }
+        Instant oldest = clock.instant().minus(retention);
+        Instant effectiveStart = start.isBefore(oldest) ? oldest : start;
+        ObservationSeries observations = series.getIfPresent(key);
+        if (observations == null) {
+            return new WeatherHistoryDTO(null, start, end, 0, null, null, null, includeSamples ? List.of() : null);
+        }
+        WeatherHistoryDTO history = observations.query(effectiveStart, end, includeSamples);
+        history.setFrom(start);
+        return history;
+    }
+
+    private long sampleCount() {
+        return series.asMap().values().stream().mapToLong(ObservationSeries::size).sum();
+    }
+}
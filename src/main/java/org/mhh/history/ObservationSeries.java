@@ -0,0 +1,155 @@
+package org.mhh.history;
+
+import org.mhh.dto.ObservationDTO;
+import org.mhh.dto.ObservationStatsDTO;
+import org.mhh.dto.WeatherHistoryDTO;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ring buffer of one city's observations in parallel primitive arrays: seconds since the series' first sample
+ * (int), temperature in hundredths of a degree (int), humidity (byte) and wind speed in cm/s (char), 11 bytes
+ * per sample. Fixed-point values come back exactly as the upstream reported them, up to two decimals, and the
+ * relative times do not run out before the series is 68 years old. The arrays grow by doubling
+ * up to {@code capacity}, after which the oldest sample is overwritten. Samples are kept in time order;
+ * one that is not newer than the latest sample (the same fetch seen twice) is ignored.
+ */
+class ObservationSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    // epoch second that times are relative to
+    private long baseSecond;
+    private int[] times;
+    private int[] temperatures;
+    private byte[] humidities;
+    private char[] windSpeeds;
+    // index of the oldest sample
+    private int head;
+    private int size;
+    private String cityName;
+
+    ObservationSeries(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, INITIAL_CAPACITY);
+        this.times = new int[initial];
+        this.temperatures = new int[initial];
+        this.humidities = new byte[initial];
+        this.windSpeeds = new char[initial];
+    }
+
+    synchronized boolean append(Instant observedAt, String cityName, double temperature, int humidity, double windSpeed) {
+        if (size == 0) {
+            baseSecond = observedAt.getEpochSecond();
+        }
+        long time = observedAt.getEpochSecond() - baseSecond;
+        if (size > 0 && time <= times[index(size - 1)]) {
+            return false;
+        }
+        if (size == times.length && size < capacity) {
+            grow();
+        }
+        int slot;
+        if (size == times.length) {
+            slot = head;
+            head = (head + 1) % times.length;
+        } else {
+            slot = index(size++);
+        }
+        times[slot] = (int) time;
+        temperatures[slot] = (int) Math.round(temperature * 100);
+        humidities[slot] = (byte) Math.max(0, Math.min(humidity, 100));
+        windSpeeds[slot] = (char) Math.max(0, Math.min(Math.round(windSpeed * 100), Character.MAX_VALUE));
+        this.cityName = cityName;
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Aggregates the samples observed within {@code [from, to]} in one pass, and copies them out as well when
+     * {@code includeSamples} is set.
+     */
+    synchronized WeatherHistoryDTO query(Instant from, Instant to, boolean includeSamples) {
+        long fromTime = from.getEpochSecond() - baseSecond;
+        long toTime = to.getEpochSecond() - baseSecond;
+        int first = firstAtOrAfter(fromTime);
+        List<ObservationDTO> samples = includeSamples ? new ArrayList<>() : null;
+        int count = 0;
+        int minTemperature = Integer.MAX_VALUE, maxTemperature = Integer.MIN_VALUE;
+        long sumTemperature = 0;
+        int minHumidity = Integer.MAX_VALUE, maxHumidity = Integer.MIN_VALUE;
+        long sumHumidity = 0;
+        int minWind = Integer.MAX_VALUE, maxWind = Integer.MIN_VALUE;
+        long sumWind = 0;
+        for (int i = first; i < size; i++) {
+            int slot = index(i);
+            if (times[slot] > toTime) {
+                break;
+            }
+            int temperature = temperatures[slot];
+            int humidity = humidities[slot];
+            int wind = windSpeeds[slot];
+            count++;
+            minTemperature = Math.min(minTemperature, temperature);
+            maxTemperature = Math.max(maxTemperature, temperature);
+            sumTemperature += temperature;
+            minHumidity = Math.min(minHumidity, humidity);
+            maxHumidity = Math.max(maxHumidity, humidity);
+            sumHumidity += humidity;
+            minWind = Math.min(minWind, wind);
+            maxWind = Math.max(maxWind, wind);
+            sumWind += wind;
+            if (samples != null) {
+                samples.add(new ObservationDTO(Instant.ofEpochSecond(baseSecond + times[slot]), temperature / 100.0,
+                        humidity, wind / 100.0));
+            }
+        }
+        if (count == 0) {
+            return new WeatherHistoryDTO(cityName, from, to, 0, null, null, null, samples);
+        }
+        return new WeatherHistoryDTO(cityName, from, to, count,
+                new ObservationStatsDTO(minTemperature / 100.0, maxTemperature / 100.0, sumTemperature / 100.0 / count),
+                new ObservationStatsDTO(minHumidity, maxHumidity, (double) sumHumidity / count),
+                new ObservationStatsDTO(minWind / 100.0, maxWind / 100.0, sumWind / 100.0 / count),
+                samples);
+    }
+
+    /**
+     * Position (0 = oldest) of the first sample at or after {@code time}, by binary search over the ring.
+     */
+    private int firstAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[index(mid)] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int index(int position) {
+        return (head + position) % times.length;
+    }
+
+    /**
+     * Only called before the buffer is full, while the oldest sample is still at index 0.
+     */
+    private void grow() {
+        int length = Math.min(capacity, times.length * 2);
+        times = Arrays.copyOf(times, length);
+        temperatures = Arrays.copyOf(temperatures, length);
+        humidities = Arrays.copyOf(humidities, length);
+        windSpeeds = Arrays.copyOf(windSpeeds, length);
+    }
+}
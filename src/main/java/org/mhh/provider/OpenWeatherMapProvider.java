@@ -0,0 +1,269 @@
+package org.mhh.provider;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.UpstreamQuotaExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * OpenWeatherMap's current-weather API ({@code /data/2.5/weather}), or anything that speaks it, such as another
+ * region or a local stub.
+ */
+public class OpenWeatherMapProvider implements WeatherProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenWeatherMapProvider.class);
+    // outcome tag of weather.upstream.requests
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_NOT_FOUND = "not_found";
+    private static final String OUTCOME_RATE_LIMITED = "rate_limited";
+    private static final String OUTCOME_CLIENT_ERROR = "client_error";
+    private static final String OUTCOME_SERVER_ERROR = "server_error";
+    private static final String OUTCOME_NETWORK_ERROR = "network_error";
+    private static final String OUTCOME_PARSE_ERROR = "parse_error";
+    private final String name;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String apiUrl;
+    private final String apiKey;
+    private final String apiUnits;
+
+    public OpenWeatherMapProvider(String name, RestTemplate restTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  String apiUrl, String apiKey, String apiUnits) {
+        this.name = name;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.apiUnits = apiUnits;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public WeatherResponseDTO fetchByCity(String city) {
+        return fetch(buildUrl(city), city);
+    }
+
+    @Override
+    public WeatherResponseDTO fetchByCoordinates(double latitude, double longitude) {
+        return fetch(buildUrl(latitude, longitude), latitude + "," + longitude);
+    }
+
+    private WeatherResponseDTO fetch(String url, String city) {
+        log.debug("Requesting URL: {}", url);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_SUCCESS;
+        try {
+            return restTemplate.execute(url, HttpMethod.GET,
+                    request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                    response -> mapJsonToDto(response.getBody(), city));
+
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                log.debug("OpenWeatherMap API does not know city {}", city);
+                outcome = OUTCOME_NOT_FOUND;
+                throw new CityNotFoundException(city, e);
+            } else if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                log.warn("OpenWeatherMap API rate limit hit for city {}", city);
+                outcome = OUTCOME_RATE_LIMITED;
+                throw new UpstreamQuotaExceededException("Upstream request quota exceeded.", e);
+            } else {
+                log.error("HTTP Error calling OpenWeatherMap API for city {}: {} - {}", city, e.getStatusCode(), e.getResponseBodyAsString(), e);
+                outcome = OUTCOME_CLIENT_ERROR;
+                throw new ExternalApiException("Received HTTP error " + e.getStatusCode() + " from external service.", e);
+            }
+        } catch (RestClientException e) {
+            // RestTemplate wraps every IOException thrown while extracting the body, including parse errors
+            if (e.getCause() instanceof JsonProcessingException parseError) {
+                outcome = OUTCOME_PARSE_ERROR;
+                log.error("Error parsing JSON response for city {}: {}", city, parseError.getMessage(), parseError);
+                throw new ExternalApiException("Failed to parse response from external service.", parseError);
+            }
+            outcome = e instanceof HttpServerErrorException ? OUTCOME_SERVER_ERROR : OUTCOME_NETWORK_ERROR;
+            log.error("Network or communication error calling OpenWeatherMap API for city {}: {}", city, e.getMessage(), e);
+            throw new ExternalApiException("Could not communicate with the external weather service.", e);
+        } catch (CityNotFoundException e) {
+            outcome = OUTCOME_NOT_FOUND;
+            throw e;
+        } catch (ExternalApiException e) {
+            // a 200 response whose body carries an error code
+            outcome = OUTCOME_SERVER_ERROR;
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("weather.upstream.requests")
+                    .description("Calls to the OpenWeatherMap API")
+                    .tag("provider", name)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    String buildUrl(String city) {
+        return UriComponentsBuilder.fromHttpUrl(apiUrl)
+                .queryParam("q", city)
+                .queryParam("appid", apiKey)
+                .queryParam("units", apiUnits)
+                .toUriString();
+    }
+
+    String buildUrl(double latitude, double longitude) {
+        return UriComponentsBuilder.fromHttpUrl(apiUrl)
+                .queryParam("lat", latitude)
+                .queryParam("lon", longitude)
+                .queryParam("appid", apiKey)
+                .queryParam("units", apiUnits)
+                .toUriString();
+    }
+
+    /**
+     * Streams the OpenWeatherMap payload and keeps only the fields we return; everything else is skipped
+     * without building a tree. Missing fields fall back to the same defaults as before.
+     */
+    WeatherResponseDTO mapJsonToDto(InputStream jsonResponse, String requestedCity) throws IOException, CityNotFoundException {
+        int responseCode = 0;
+        String errorMessage = null;
+        String cityName = null;
+        double temperature = 0;
+        String description = null;
+        int humidity = 0;
+        double windSpeed = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonResponse)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object from OpenWeatherMap");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "cod" -> {
+                        if (isScalar(parser, value)) {
+                            responseCode = parser.getValueAsInt();
+                        }
+                    }
+                    case "message" -> {
+                        if (isScalar(parser, value)) {
+                            errorMessage = parser.getValueAsString();
+                        }
+                    }
+                    case "name" -> {
+                        if (isScalar(parser, value)) {
+                            cityName = parser.getValueAsString();
+                        }
+                    }
+                    case "main" -> {
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                        }
+                        while (value == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String mainField = parser.currentName();
+                            if (!isScalar(parser, parser.nextToken())) {
+                                continue;
+                            }
+                            switch (mainField) {
+                                case "temp" -> temperature = parser.getValueAsDouble();
+                                case "humidity" -> humidity = parser.getValueAsInt();
+                            }
+                        }
+                    }
+                    case "wind" -> {
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                        }
+                        while (value == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String windField = parser.currentName();
+                            if (isScalar(parser, parser.nextToken()) && "speed".equals(windField)) {
+                                windSpeed = parser.getValueAsDouble();
+                            }
+                        }
+                    }
+                    case "weather" -> description = readFirstDescription(parser, value);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (responseCode == 0) {
+                throw new JsonParseException(parser, "OpenWeatherMap response has no cod field");
+            }
+        }
+
+        if (responseCode != 200) {
+            errorMessage = errorMessage != null ? errorMessage : "Unknown error from OpenWeatherMap";
+            log.warn("OpenWeatherMap API returned non-200 code {} for city {}: {}", responseCode, requestedCity, errorMessage);
+            if (responseCode == 404) {
+                throw new CityNotFoundException(requestedCity);
+            } else {
+                throw new ExternalApiException("External service returned error code " + responseCode + ": " + errorMessage);
+            }
+        }
+        return new WeatherResponseDTO(cityName != null ? cityName : requestedCity, temperature,
+                description != null ? description : "N/A", humidity, windSpeed, Instant.now(), false);
+    }
+
+    /**
+     * Reads {@code weather[0].description}, leaving the parser after the end of the {@code weather} value.
+     */
+    private String readFirstDescription(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        String description = null;
+        boolean first = true;
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+            if (first && element == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (isScalar(parser, parser.nextToken()) && "description".equals(field)) {
+                        description = parser.getValueAsString();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return description;
+    }
+
+    /**
+     * Whether the value just read is a scalar. An object or array is skipped, so its fields are never mistaken
+     * for fields of the enclosing object.
+     */
+    private static boolean isScalar(JsonParser parser, JsonToken value) throws IOException {
+        if (value != null && value.isStructStart()) {
+            parser.skipChildren();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package org.mhh.provider;
+
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+
+/**
+ * A backend that answers current-weather lookups. Implementations make one blocking call per lookup and
+ * report failures the way {@link OpenWeatherMapProvider} does: {@link CityNotFoundException} when the
+ * backend does not know the location, {@link ExternalApiException} for everything that went wrong talking
+ * to it. Every {@code WeatherProvider} bean is used, in {@code @Order}, by {@link WeatherProviders}.
+ */
+public interface WeatherProvider {
+
+    /**
+     * Short name used in logs and as the {@code provider} metric tag.
+     */
+    String getName();
+
+    WeatherResponseDTO fetchByCity(String city);
+
+    WeatherResponseDTO fetchByCoordinates(double latitude, double longitude);
+}
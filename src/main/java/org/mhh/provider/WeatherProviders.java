@@ -0,0 +1,318 @@
+package org.mhh.provider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.UpstreamQuotaExceededException;
+import org.mhh.upstream.UpstreamGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sends a lookup to the configured {@link WeatherProvider}s, cutting tail latency with hedged requests and
+ * riding out a failing provider with failover.
+ * <p>
+ * Providers are tried in their configured order, except that a provider failing {@code failure-threshold}
+ * times in a row is moved to the back for {@code cool-down}. If the first attempt has not answered after its
+ * provider's {@code hedge.percentile} latency, a second request goes to the next provider and the first answer
+ * wins. With a single provider there is no hedging unless {@code hedge.same-provider} allows a second request to
+ * the same one. If an attempt fails, the next provider is tried. "Not found" is an answer, not a failure, and
+ * ends the lookup.
+ * <p>
+ * Runs within the single call {@link UpstreamGuard} allowed, so the circuit breaker sees one result per lookup:
+ * it only opens when every provider is failing. Both kinds of extra call need spare request quota and a free
+ * bulkhead permit and are skipped without them. A losing attempt cannot be stopped once its request is on the
+ * wire, so it keeps a bulkhead permit until it has finished, also after the lookup returned.
+ */
+@Component
+public class WeatherProviders {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherProviders.class);
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final List<ProviderState> providers;
+    private final UpstreamGuard upstreamGuard;
+    private final boolean hedgeEnabled;
+    private final boolean hedgeSameProvider;
+    private final double hedgePercentile;
+    private final Duration hedgeInitialDelay;
+    private final Duration hedgeMinDelay;
+    private final int failureThreshold;
+    private final Duration coolDown;
+    private final ExecutorService executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public WeatherProviders(List<WeatherProvider> providers,
+                            UpstreamGuard upstreamGuard,
+                            MeterRegistry meterRegistry,
+                            ServingThreads servingThreads,
+                            @Value("${weather.providers.hedge.enabled:true}") boolean hedgeEnabled,
+                            @Value("${weather.providers.hedge.same-provider:false}") boolean hedgeSameProvider,
+                            @Value("${weather.providers.hedge.percentile:95}") double hedgePercentile,
+                            @Value("${weather.providers.hedge.initial-delay:1s}") Duration hedgeInitialDelay,
+                            @Value("${weather.providers.hedge.min-delay:50ms}") Duration hedgeMinDelay,
+                            @Value("${weather.providers.failover.failure-threshold:3}") int failureThreshold,
+                            @Value("${weather.providers.failover.cool-down:30s}") Duration coolDown) {
+        if (providers.isEmpty()) {
+            throw new IllegalStateException("At least one WeatherProvider must be configured");
+        }
+        this.providers = providers.stream().map(provider -> new ProviderState(provider, meterRegistry)).toList();
+        this.upstreamGuard = upstreamGuard;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeSameProvider = hedgeSameProvider;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeInitialDelay = hedgeInitialDelay;
+        this.hedgeMinDelay = hedgeMinDelay;
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+        this.executor = Executors.newCachedThreadPool(servingThreads.threadFactory("weather-upstream-"));
+        Gauge.builder("weather.upstream.inflight", inFlight, AtomicInteger::get)
+                .description("Upstream provider calls currently in progress, including hedges")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public WeatherResponseDTO fetchByCity(String city) {
+        return fetch(provider -> provider.fetchByCity(city));
+    }
+
+    public WeatherResponseDTO fetchByCoordinates(double latitude, double longitude) {
+        return fetch(provider -> provider.fetchByCoordinates(latitude, longitude));
+    }
+
+    private WeatherResponseDTO fetch(Function<WeatherProvider, WeatherResponseDTO> lookup) {
+        List<ProviderState> order = candidates();
+        boolean hedge = hedgeEnabled && (order.size() > 1 || hedgeSameProvider);
+        if (!hedge && order.size() == 1) {
+            // nothing to hedge or fail over to, so skip the hand-off to another thread
+            Attempt attempt = attempt(order.get(0), lookup, false);
+            if (attempt.error != null) {
+                throw attempt.error;
+            }
+            return attempt.result;
+        }
+
+        BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+        ExtraCalls extraCalls = new ExtraCalls();
+        submit(order.get(0), lookup, false, finished, extraCalls);
+        int nextProvider = 1;
+        int running = 1;
+        long hedgeAt = hedge ? System.nanoTime() + hedgeDelay(order.get(0)) : Long.MAX_VALUE;
+        RuntimeException lastError = null;
+        try {
+            while (running > 0) {
+                long untilHedge = hedgeAt - System.nanoTime();
+                Attempt attempt = hedgeAt == Long.MAX_VALUE ? finished.take() : finished.poll(untilHedge, TimeUnit.NANOSECONDS);
+                if (attempt == null) {
+                    hedgeAt = Long.MAX_VALUE;
+                    ProviderState target = nextProvider < order.size() ? order.get(nextProvider++) : order.get(0);
+                    if (upstreamGuard.tryAcquireExtraCall()) {
+                        target.hedges.increment();
+                        extraCalls.started();
+                        submit(target, lookup, true, finished, extraCalls);
+                        running++;
+                    }
+                    continue;
+                }
+                running--;
+                if (attempt.error == null) {
+                    if (attempt.hedge) {
+                        attempt.provider.hedgeWins.increment();
+                    }
+                    return attempt.result;
+                }
+                if (!(attempt.error instanceof ExternalApiException)) {
+                    throw attempt.error;
+                }
+                lastError = attempt.error;
+                if (running == 0 && nextProvider < order.size() && upstreamGuard.tryAcquireExtraCall()) {
+                    ProviderState target = order.get(nextProvider++);
+                    log.warn("Provider {} failed ({}), failing over to {}", attempt.provider.getName(),
+                            attempt.error.getMessage(), target.getName());
+                    attempt.provider.failovers.increment();
+                    extraCalls.started();
+                    submit(target, lookup, false, finished, extraCalls);
+                    running++;
+                }
+            }
+            throw lastError;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalApiException("Interrupted while waiting for the external weather service.", e);
+        } finally {
+            // losing attempts run on until their response or read timeout, holding the permits of extra calls
+            extraCalls.lookupReturned();
+        }
+    }
+
+    /**
+     * Providers in configured order, with the ones that are cooling down after repeated failures last.
+     */
+    private List<ProviderState> candidates() {
+        long now = System.nanoTime();
+        List<ProviderState> healthy = new ArrayList<>(providers.size());
+        List<ProviderState> demoted = new ArrayList<>();
+        for (ProviderState provider : providers) {
+            (provider.isDemoted(now) ? demoted : healthy).add(provider);
+        }
+        healthy.addAll(demoted);
+        return healthy;
+    }
+
+    private long hedgeDelay(ProviderState provider) {
+        if (provider.latencies.size() < MIN_LATENCY_SAMPLES) {
+            return hedgeInitialDelay.toNanos();
+        }
+        return Math.max(hedgeMinDelay.toNanos(), provider.latencies.percentile(hedgePercentile));
+    }
+
+    private void submit(ProviderState provider, Function<WeatherProvider, WeatherResponseDTO> lookup, boolean hedge,
+                        BlockingQueue<Attempt> finished, ExtraCalls extraCalls) {
+        executor.execute(() -> {
+            try {
+                finished.add(attempt(provider, lookup, hedge));
+            } finally {
+                extraCalls.attemptFinished();
+            }
+        });
+    }
+
+    private Attempt attempt(ProviderState provider, Function<WeatherProvider, WeatherResponseDTO> lookup, boolean hedge) {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            WeatherResponseDTO result = lookup.apply(provider.provider);
+            provider.onSuccess(System.nanoTime() - start);
+            return new Attempt(provider, hedge, result, null);
+        } catch (RuntimeException e) {
+            if (e instanceof UpstreamQuotaExceededException) {
+                upstreamGuard.onQuotaExceeded();
+            }
+            if (isProviderFailure(e)) {
+                provider.onFailure();
+            }
+            return new Attempt(provider, hedge, null, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Server errors, network errors and unparseable responses say the provider is unhealthy; answers such as
+     * 404, 401 or 429 do not.
+     */
+    public static boolean isProviderFailure(RuntimeException e) {
+        return e instanceof ExternalApiException && !(e.getCause() instanceof HttpClientErrorException);
+    }
+
+    /**
+     * Bulkhead permits taken for the extra calls of one lookup. They are all kept while the lookup runs; once it
+     * has returned, and its {@link UpstreamGuard} permit with it, they are given back as the attempts still
+     * running finish, so every running attempt stays covered.
+     */
+    private final class ExtraCalls {
+
+        private int permits;
+        private int running = 1;
+        private boolean returned;
+
+        private synchronized void started() {
+            permits++;
+            running++;
+        }
+
+        private synchronized void attemptFinished() {
+            running--;
+            releaseUnused();
+        }
+
+        private synchronized void lookupReturned() {
+            returned = true;
+            releaseUnused();
+        }
+
+        private void releaseUnused() {
+            while (returned && permits > running) {
+                permits--;
+                upstreamGuard.releaseExtraCall();
+            }
+        }
+    }
+
+    private record Attempt(ProviderState provider, boolean hedge, WeatherResponseDTO result, RuntimeException error) {
+    }
+
+    private final class ProviderState {
+
+        private final WeatherProvider provider;
+        private final LatencyTracker latencies = new LatencyTracker(LATENCY_SAMPLES);
+        private final Counter hedges;
+        private final Counter hedgeWins;
+        private final Counter failovers;
+        private int consecutiveFailures;
+        private long demotedUntil;
+
+        private ProviderState(WeatherProvider provider, MeterRegistry meterRegistry) {
+            this.provider = provider;
+            this.hedges = Counter.builder("weather.upstream.hedges")
+                    .description("Hedged requests sent to the provider because an earlier attempt was slow")
+                    .tag("provider", provider.getName())
+                    .register(meterRegistry);
+            this.hedgeWins = Counter.builder("weather.upstream.hedge.wins")
+                    .description("Hedged requests to the provider that answered first")
+                    .tag("provider", provider.getName())
+                    .register(meterRegistry);
+            this.failovers = Counter.builder("weather.upstream.failovers")
+                    .description("Lookups moved to another provider after this one failed")
+                    .tag("provider", provider.getName())
+                    .register(meterRegistry);
+            Gauge.builder("weather.upstream.provider.demoted", this, state -> state.isDemoted(System.nanoTime()) ? 1 : 0)
+                    .description("1 while the provider is tried last because it kept failing")
+                    .tag("provider", provider.getName())
+                    .register(meterRegistry);
+        }
+
+        private String getName() {
+            return provider.getName();
+        }
+
+        private synchronized boolean isDemoted(long now) {
+            return consecutiveFailures >= failureThreshold && now - demotedUntil < 0;
+        }
+
+        private synchronized void onSuccess(long nanos) {
+            consecutiveFailures = 0;
+            latencies.record(nanos);
+        }
+
+        private synchronized void onFailure() {
+            consecutiveFailures++;
+            if (consecutiveFailures >= failureThreshold) {
+                demotedUntil = System.nanoTime() + coolDown.toNanos();
+            }
+        }
+    }
+}
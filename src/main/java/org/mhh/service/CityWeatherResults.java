@@ -0,0 +1,51 @@
+package org.mhh.service;
+
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.ErrorResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.InvalidInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-city error results for the endpoints that answer several cities at once, with the same status and
+ * message a single-city request would get.
+ */
+final class CityWeatherResults {
+
+    private static final Logger log = LoggerFactory.getLogger(CityWeatherResults.class);
+
+    private CityWeatherResults() {
+    }
+
+    static CityWeatherResultDTO failure(String city, Throwable cause) {
+        HttpStatus status;
+        String message;
+        if (cause instanceof CityNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+            message = cause.getMessage();
+        } else if (cause instanceof InvalidInputException) {
+            status = HttpStatus.BAD_REQUEST;
+            message = cause.getMessage();
+        } else if (cause instanceof ExternalApiException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+            message = cause.getMessage();
+        } else {
+            log.error("Unexpected error fetching weather data for city {}: {}", city, cause.getMessage(), cause);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "An unexpected error occurred. Please try again later.";
+        }
+        ErrorResponseDTO error = new ErrorResponseDTO(
+                LocalDateTime.now(),
+                status.value(),
+                status.getReasonPhrase(),
+                message,
+                "uri=/api/weather?city=" + city
+        );
+        return new CityWeatherResultDTO(city, status.value(), null, error);
+    }
+}
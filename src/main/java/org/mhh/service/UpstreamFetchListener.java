@@ -0,0 +1,12 @@
+package org.mhh.service;
+
+import org.mhh.dto.WeatherResponseDTO;
+
+/**
+ * Notified after every successful upstream fetch, with the weatherCache key the result is cached under.
+ * Listeners run on the fetching thread, so they must be cheap; exceptions are logged and ignored.
+ */
+public interface UpstreamFetchListener {
+
+    void onFetched(String cacheKey, WeatherResponseDTO weather);
+}
@@ -0,0 +1,14 @@
+package org.mhh.service;
+
+import org.mhh.dto.CityWeatherResultDTO;
+
+import java.util.List;
+
+public interface WeatherBatchService {
+
+    /**
+     * Returns one result per distinct requested city, in request order. A failure for one city is reported
+     * in its own result and does not fail the batch.
+     */
+    List<CityWeatherResultDTO> getWeatherData(List<String> cities);
+}
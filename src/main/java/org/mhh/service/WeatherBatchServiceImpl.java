@@ -0,0 +1,115 @@
+package org.mhh.service;
+
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.InvalidInputException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class WeatherBatchServiceImpl implements WeatherBatchService {
+
+    private final WeatherService weatherService;
+    private final WeatherCacheAccess weatherCache;
+    private final WeatherFreshness weatherFreshness;
+    private final CityKeyGenerator cityKeys;
+    private final ExecutorService executor;
+
+    @Value("${weather.batch.max-cities:100}")
+    private int maxCities;
+    @Value("${weather.batch.timeout:10s}")
+    private Duration timeout;
+
+    public WeatherBatchServiceImpl(WeatherService weatherService,
+                                   WeatherCacheAccess weatherCache,
+                                   WeatherFreshness weatherFreshness,
+                                   CityKeyGenerator cityKeys,
+                                   @Qualifier("weatherFetchExecutor") ExecutorService executor) {
+        this.weatherService = weatherService;
+        this.weatherCache = weatherCache;
+        this.weatherFreshness = weatherFreshness;
+        this.cityKeys = cityKeys;
+        this.executor = executor;
+    }
+
+    @Override
+    public List<CityWeatherResultDTO> getWeatherData(List<String> cities) {
+        Map<String, String> citiesByKey = distinctCities(cities);
+        if (citiesByKey.isEmpty()) {
+            throw new InvalidInputException("At least one city name is required.");
+        }
+        if (citiesByKey.size() > maxCities) {
+            throw new InvalidInputException("A batch may contain at most " + maxCities + " cities.");
+        }
+
+        // cache hits are answered inline, only the misses are fanned out to the upstream
+        Map<String, CityWeatherResultDTO> results = new LinkedHashMap<>();
+        Map<String, CompletableFuture<WeatherResponseDTO>> misses = new LinkedHashMap<>();
+        citiesByKey.forEach((key, city) -> {
+            WeatherResponseDTO cached = weatherCache.peek(city);
+            if (cached != null) {
+                results.put(key, success(city, cached));
+            } else {
+                results.put(key, null);
+                misses.put(key, CompletableFuture.supplyAsync(() -> weatherService.getWeatherData(city), executor));
+            }
+        });
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        misses.forEach((key, pending) -> results.put(key, await(citiesByKey.get(key), pending, deadline)));
+        return new ArrayList<>(results.values());
+    }
+
+    private Map<String, String> distinctCities(List<String> cities) {
+        Map<String, String> citiesByKey = new LinkedHashMap<>();
+        if (cities != null) {
+            for (String city : cities) {
+                String key = city == null ? "" : cityKeys.keyFor(city);
+                if (!key.isEmpty()) {
+                    citiesByKey.putIfAbsent(key, city.trim());
+                }
+            }
+        }
+        return citiesByKey;
+    }
+
+    private CityWeatherResultDTO await(String city, CompletableFuture<WeatherResponseDTO> pending, long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return success(city, pending.get(remaining, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            pending.cancel(false);
+            return failure(city, new ExternalApiException("Timed out waiting for weather data."));
+        } catch (ExecutionException e) {
+            return failure(city, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(city, e);
+        }
+    }
+
+    private CityWeatherResultDTO success(String city, WeatherResponseDTO weather) {
+        return new CityWeatherResultDTO(city, HttpStatus.OK.value(), weatherFreshness.markIfStale(weather), null);
+    }
+
+    private CityWeatherResultDTO failure(String city, Throwable cause) {
+        return CityWeatherResults.failure(city, cause);
+    }
+}
@@ -1,8 +1,16 @@
 package org.mhh.service;
 
 import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.upstream.UpstreamPriority;
 
 public interface WeatherService {
     WeatherResponseDTO getWeatherData(String city);
 
+    /**
+     * Loads the current weather from the upstream, bypassing weatherCache. Used to (re)load cache entries.
+     *
+     * @param priority the caller's place in the queue when the upstream request quota is exhausted
+     */
+    WeatherResponseDTO fetchWeatherData(String city, UpstreamPriority priority);
+
 }
@@ -1,102 +1,108 @@
 package org.mhh.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mhh.cache.SingleFlight;
+import org.mhh.cache.UnknownCityCache;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.dto.GeoCellDTO;
 import org.mhh.dto.WeatherResponseDTO;
 import org.mhh.exception.CityNotFoundException;
-import org.mhh.exception.ExternalApiException;
 import org.mhh.exception.InvalidInputException;
+import org.mhh.geo.GeoGrid;
+import org.mhh.provider.WeatherProviders;
+import org.mhh.upstream.UpstreamPriority;
+import org.mhh.upstream.UpstreamGuard;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class WeatherServiceImpl implements WeatherService {
 
     private static final Logger log = LoggerFactory.getLogger(WeatherServiceImpl.class);
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-
-    @Value("${openweathermap.api.key}")
-    private String apiKey;
-    @Value("${openweathermap.api.url}")
-    private String apiUrl;
-    @Value("${openweathermap.api.units}")
-    private String apiUnits;
+    private final WeatherProviders weatherProviders;
+    private final UnknownCityCache unknownCities;
+    private final CityKeyGenerator cityKeys;
+    private final UpstreamGuard upstreamGuard;
+    private final List<UpstreamFetchListener> fetchListeners;
+    private final ClusterRouting clusterRouting;
+    /** One flight per priority, so an interactive miss never joins a background call queued for quota. */
+    private final Map<UpstreamPriority, SingleFlight<String, WeatherResponseDTO>> upstreamCalls = new EnumMap<>(UpstreamPriority.class);
 
-    public WeatherServiceImpl(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
-        this.objectMapper = new ObjectMapper();
+    public WeatherServiceImpl(WeatherProviders weatherProviders, UnknownCityCache unknownCities, CityKeyGenerator cityKeys,
+                              UpstreamGuard upstreamGuard, List<UpstreamFetchListener> fetchListeners,
+                              ClusterRouting clusterRouting) {
+        this.weatherProviders = weatherProviders;
+        this.unknownCities = unknownCities;
+        this.cityKeys = cityKeys;
+        this.upstreamGuard = upstreamGuard;
+        this.fetchListeners = fetchListeners;
+        this.clusterRouting = clusterRouting;
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            upstreamCalls.put(priority, new SingleFlight<>());
+        }
     }
 
+    /**
+     * {@code sync}: the cache loads each key once, and the result is stored before the key is released, so a miss
+     * that arrives just after the upstream call finished reads the entry instead of starting another call.
+     */
     @Override
-    @Cacheable(value = "weatherCache", key = "#city.toLowerCase()")
+    @Cacheable(value = "weatherCache", keyGenerator = "cityKeyGenerator", cacheResolver = "clusterCacheResolver", sync = true)
     public WeatherResponseDTO getWeatherData(String city) {
-        log.info(">>> Fetching weather data for city: {} (Cache MISS or expired)", city);
+        if (!clusterRouting.isLocal(city)) {
+            return clusterRouting.fetchFromOwner(city, () -> fetchWeatherData(city, UpstreamPriority.INTERACTIVE));
+        }
+        log.debug(">>> Fetching weather data for city: {} (Cache MISS or expired)", city);
+        return fetchWeatherData(city, UpstreamPriority.INTERACTIVE);
+    }
 
-        if (city == null || city.trim().isEmpty()) {
+    @Override
+    public WeatherResponseDTO fetchWeatherData(String city, UpstreamPriority priority) {
+        String cacheKey = city == null ? "" : cityKeys.keyFor(city);
+        if (cacheKey.isEmpty()) {
             throw new InvalidInputException("City name cannot be empty.");
         }
 
-        String url = buildUrl(city);
-        log.debug("Requesting URL: {}", url);
-
-        try {
-            String jsonResponse = restTemplate.getForObject(url, String.class);
-            log.debug("Received JSON response: {}", jsonResponse);
-            return mapJsonToDto(jsonResponse, city);
-
-        } catch (HttpClientErrorException e) {
-            log.error("HTTP Error calling OpenWeatherMap API for city {}: {} - {}", city, e.getStatusCode(), e.getResponseBodyAsString(), e);
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                throw new CityNotFoundException(city, e);
-            } else {
-                throw new ExternalApiException("Received HTTP error " + e.getStatusCode() + " from external service.", e);
-            }
-        } catch (RestClientException e) {
-            log.error("Network or communication error calling OpenWeatherMap API for city {}: {}", city, e.getMessage(), e);
-            throw new ExternalApiException("Could not communicate with the external weather service.", e);
-        } catch (JsonProcessingException e) {
-            log.error("Error parsing JSON response for city {}: {}", city, e.getMessage(), e);
-            throw new ExternalApiException("Failed to parse response from external service.", e);
+        if (unknownCities.isUnknown(cacheKey)) {
+            throw CityNotFoundException.withoutStackTrace(city);
         }
+        GeoCellDTO cell = GeoGrid.parseCellKey(cacheKey);
+        // concurrent misses for the same key and priority share a single upstream call
+        return upstreamCalls.get(priority).execute(cacheKey, () -> {
+            WeatherResponseDTO weather;
+            try {
+                weather = upstreamGuard.call(priority,
+                        () -> cell != null ? fetchFromUpstream(cell) : weatherProviders.fetchByCity(cityKeys.queryFor(city)),
+                        WeatherProviders::isProviderFailure);
+            } catch (CityNotFoundException e) {
+                unknownCities.markUnknown(cacheKey);
+                throw e;
+            }
+            notifyFetched(cacheKey, weather);
+            return weather;
+        });
     }
 
-    private String buildUrl(String city) {
-        return UriComponentsBuilder.fromHttpUrl(apiUrl)
-                .queryParam("q", city)
-                .queryParam("appid", apiKey)
-                .queryParam("units", apiUnits)
-                .toUriString();
-    }
-
-    private WeatherResponseDTO mapJsonToDto(String jsonResponse, String requestedCity) throws JsonProcessingException, CityNotFoundException {
-        JsonNode rootNode = objectMapper.readTree(jsonResponse);
-        int responseCode = rootNode.path("cod").asInt();
-        if (responseCode != 200) {
-            String errorMessage = rootNode.path("message").asText("Unknown error from OpenWeatherMap");
-            log.warn("OpenWeatherMap API returned non-200 code {} for city {}: {}", responseCode, requestedCity, errorMessage);
-            if (responseCode == 404) {
-                throw new CityNotFoundException(requestedCity);
-            } else {
-                throw new ExternalApiException("External service returned error code " + responseCode + ": " + errorMessage);
+    private void notifyFetched(String cacheKey, WeatherResponseDTO weather) {
+        for (UpstreamFetchListener listener : fetchListeners) {
+            try {
+                listener.onFetched(cacheKey, weather);
+            } catch (RuntimeException e) {
+                log.warn("Upstream fetch listener {} failed for key {}: {}", listener.getClass().getSimpleName(), cacheKey, e.getMessage(), e);
             }
         }
-        String cityName = rootNode.path("name").asText(requestedCity);
-        Double temperature = rootNode.path("main").path("temp").asDouble();
-        String description = rootNode.path("weather").get(0).path("description").asText("N/A");
-        Integer humidity = rootNode.path("main").path("humidity").asInt();
-        Double windSpeed = rootNode.path("wind").path("speed").asDouble();
+    }
 
-        return new WeatherResponseDTO(cityName, temperature, description, humidity, windSpeed);
+    /**
+     * Asks the providers for the cell's center, so every position inside the cell gets the same answer.
+     */
+    private WeatherResponseDTO fetchFromUpstream(GeoCellDTO cell) {
+        return weatherProviders.fetchByCoordinates(cell.getLatitude(), cell.getLongitude()).withCell(cell);
     }
 }
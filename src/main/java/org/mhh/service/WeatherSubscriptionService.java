@@ -0,0 +1,14 @@
+package org.mhh.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface WeatherSubscriptionService {
+
+    /**
+     * Opens a Server-Sent Events stream with one {@code weather} event per city whenever its weather changes,
+     * starting with the current value.
+     */
+    SseEmitter subscribe(List<String> cities);
+}
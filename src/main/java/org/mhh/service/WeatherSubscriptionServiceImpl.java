@@ -0,0 +1,334 @@
+package org.mhh.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.InvalidInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes weather updates to Server-Sent Events subscribers.
+ * <p>
+ * Each subscribed city (by cache key) has one scheduled poll, however many clients subscribed to it. The poll
+ * goes through the cached {@link WeatherService#getWeatherData(String)}, so it usually ends at weatherCache and
+ * only reaches the upstream when the entry has expired. An event is serialized once and pushed to every
+ * subscriber of the city, and only when the weather differs from the last pushed value; a new fetch with the
+ * same readings is not an update. Subscribers hold an async servlet request rather than a thread, so idle
+ * connections cost a socket and little else; a periodic comment line keeps them alive through proxies and
+ * detects clients that went away.
+ * <p>
+ * Events are queued per subscriber and written by a sender thread, never by the poll that produced them or while
+ * a lock is held, so a client that reads slowly only delays itself. A subscriber that falls more than
+ * {@value #MAX_PENDING_EVENTS} events behind is dropped.
+ */
+@Service
+public class WeatherSubscriptionServiceImpl implements WeatherSubscriptionService {
+
+    private static final Logger log = LoggerFactory.getLogger(WeatherSubscriptionServiceImpl.class);
+    private static final String EVENT_NAME = "weather";
+    private static final int MAX_PENDING_EVENTS = 32;
+
+    private final WeatherService weatherService;
+    private final WeatherFreshness weatherFreshness;
+    private final CityKeyGenerator cityKeys;
+    private final ObjectMapper objectMapper;
+    private final int maxCities;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+    private final Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("keep-alive").build();
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    public WeatherSubscriptionServiceImpl(WeatherService weatherService,
+                                          WeatherFreshness weatherFreshness,
+                                          CityKeyGenerator cityKeys,
+                                          ObjectMapper objectMapper,
+                                          MeterRegistry meterRegistry,
+                                          ServingThreads servingThreads,
+                                          @Value("${weather.subscriptions.max-cities:20}") int maxCities,
+                                          @Value("${weather.subscriptions.poll-interval:30s}") Duration pollInterval,
+                                          @Value("${weather.subscriptions.heartbeat-interval:30s}") Duration heartbeatInterval,
+                                          @Value("${weather.subscriptions.timeout:30m}") Duration timeout,
+                                          @Value("${weather.subscriptions.poll-threads:4}") int pollThreads) {
+        this.weatherService = weatherService;
+        this.weatherFreshness = weatherFreshness;
+        this.cityKeys = cityKeys;
+        this.objectMapper = objectMapper;
+        this.maxCities = maxCities;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("weather-subscriptions-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newScheduledThreadPool(pollThreads, threadFactory);
+        this.sender = Executors.newCachedThreadPool(servingThreads.threadFactory("weather-subscriptions-send-"));
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        Gauge.builder("weather.subscriptions.connections", subscriptions, Set::size)
+                .description("Open Server-Sent Events subscriptions")
+                .register(meterRegistry);
+        Gauge.builder("weather.subscriptions.cities", topics, Map::size)
+                .description("Cities polled for subscribers")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public SseEmitter subscribe(List<String> cities) {
+        Map<String, String> citiesByKey = new LinkedHashMap<>();
+        if (cities != null) {
+            for (String city : cities) {
+                String key = city == null ? "" : cityKeys.keyFor(city);
+                if (!key.isEmpty()) {
+                    citiesByKey.putIfAbsent(key, cityKeys.queryFor(city));
+                }
+            }
+        }
+        if (citiesByKey.isEmpty()) {
+            throw new InvalidInputException("At least one city name is required.");
+        }
+        if (citiesByKey.size() > maxCities) {
+            throw new InvalidInputException("A subscription may contain at most " + maxCities + " cities.");
+        }
+
+        SseEmitter emitter = newEmitter(timeout.toMillis());
+        Subscription subscription = new Subscription(emitter, citiesByKey.keySet());
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+        subscriptions.add(subscription);
+        for (Map.Entry<String, String> city : citiesByKey.entrySet()) {
+            topics.compute(city.getKey(), (key, existing) -> {
+                Topic joined = existing != null ? existing : startTopic(key, city.getValue());
+                joined.join(subscription);
+                return joined;
+            });
+        }
+        if (!subscriptions.contains(subscription)) {
+            // the client went away while joining, drop the cities it joined after that
+            unsubscribe(subscription);
+        }
+        return emitter;
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    int subscribedCities() {
+        return topics.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
+    }
+
+    private Topic startTopic(String key, String city) {
+        Topic topic = new Topic(city);
+        topic.poll = scheduler.scheduleWithFixedDelay(topic::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.debug("Started polling {} for subscribers", key);
+        return topic;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        subscription.closed = true;
+        subscriptions.remove(subscription);
+        for (String key : subscription.keys) {
+            topics.computeIfPresent(key, (k, topic) -> {
+                topic.subscribers.remove(subscription);
+                if (!topic.subscribers.isEmpty()) {
+                    return topic;
+                }
+                topic.poll.cancel(false);
+                log.debug("Stopped polling {}, no subscribers left", k);
+                return null;
+            });
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscriptions.forEach(subscription -> {
+            if (!subscription.offer(heartbeat)) {
+                unsubscribe(subscription);
+            }
+        });
+    }
+
+    private static boolean send(Subscription subscription, Set<DataWithMediaType> event) {
+        try {
+            subscription.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // the client went away or the stream already ended
+            log.debug("Dropping subscription: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Readings that clients see; a new fetch time or the stale flag alone does not make an update.
+     */
+    private static boolean sameResult(CityWeatherResultDTO previous, CityWeatherResultDTO current) {
+        if (previous.getStatus() != current.getStatus()) {
+            return false;
+        }
+        if (previous.getError() != null || current.getError() != null) {
+            return previous.getError() != null && current.getError() != null
+                    && Objects.equals(previous.getError().getMessage(), current.getError().getMessage());
+        }
+        WeatherResponseDTO before = previous.getWeather();
+        WeatherResponseDTO after = current.getWeather();
+        return Objects.equals(before.getCityName(), after.getCityName())
+                && Objects.equals(before.getTemperature(), after.getTemperature())
+                && Objects.equals(before.getDescription(), after.getDescription())
+                && Objects.equals(before.getHumidity(), after.getHumidity())
+                && Objects.equals(before.getWindSpeed(), after.getWindSpeed())
+                && Objects.equals(before.getCell(), after.getCell());
+    }
+
+    private final class Subscription {
+
+        private final SseEmitter emitter;
+        private final Set<String> keys;
+        private final Queue<Set<DataWithMediaType>> outbox = new ConcurrentLinkedQueue<>();
+        // events offered and not yet written; the offer that raises it from 0 starts the sender
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile boolean tooSlow;
+
+        private Subscription(SseEmitter emitter, Set<String> keys) {
+            this.emitter = emitter;
+            this.keys = keys;
+        }
+
+        /**
+         * Queues an event for this subscriber without blocking. Safe to call under a lock.
+         *
+         * @return false if the subscriber is gone or too far behind and should be unsubscribed
+         */
+        private boolean offer(Set<DataWithMediaType> event) {
+            if (closed) {
+                return false;
+            }
+            if (pending.get() >= MAX_PENDING_EVENTS) {
+                log.debug("Dropping subscription that is {} events behind", MAX_PENDING_EVENTS);
+                tooSlow = true;
+                return false;
+            }
+            outbox.add(event);
+            if (pending.getAndIncrement() == 0) {
+                sender.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            do {
+                if (closed) {
+                    outbox.clear();
+                    if (tooSlow) {
+                        emitter.complete();
+                    }
+                    return;
+                }
+                if (!send(this, outbox.poll())) {
+                    unsubscribe(this);
+                    return;
+                }
+            } while (pending.decrementAndGet() > 0);
+        }
+    }
+
+    private final class Topic {
+
+        private final String city;
+        private final Set<Subscription> subscribers = ConcurrentHashMap.newKeySet();
+        private CityWeatherResultDTO latest;
+        private Set<DataWithMediaType> latestEvent;
+        private ScheduledFuture<?> poll;
+
+        private Topic(String city) {
+            this.city = city;
+        }
+
+        private void poll() {
+            CityWeatherResultDTO result;
+            try {
+                result = new CityWeatherResultDTO(city, HttpStatus.OK.value(),
+                        weatherFreshness.markIfStale(weatherService.getWeatherData(city)), null);
+            } catch (RuntimeException e) {
+                result = CityWeatherResults.failure(city, e);
+            }
+            // unsubscribing takes the topics lock, so it happens after this topic's lock is released
+            publish(result).forEach(WeatherSubscriptionServiceImpl.this::unsubscribe);
+        }
+
+        // publishing and joining are serialized, so every subscriber gets each value once and in order; they only
+        // queue events, the writes happen on the sender
+        private synchronized List<Subscription> publish(CityWeatherResultDTO result) {
+            if (latest != null && sameResult(latest, result)) {
+                return List.of();
+            }
+            Set<DataWithMediaType> event;
+            try {
+                event = SseEmitter.event().name(EVENT_NAME).data(objectMapper.writeValueAsString(result)).build();
+            } catch (JsonProcessingException e) {
+                log.error("Could not serialize weather update for {}: {}", city, e.getMessage(), e);
+                return List.of();
+            }
+            latest = result;
+            latestEvent = event;
+            List<Subscription> gone = new ArrayList<>();
+            for (Subscription subscription : subscribers) {
+                if (!subscription.offer(event)) {
+                    gone.add(subscription);
+                }
+            }
+            return gone;
+        }
+
+        private synchronized void join(Subscription subscription) {
+            subscribers.add(subscription);
+            if (latestEvent != null) {
+                // a fresh subscription cannot be behind yet, and one that is already closed is cleaned up by subscribe
+                subscription.offer(latestEvent);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.mhh.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.exception.UpstreamUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent upstream calls, so a slow upstream can hold at most {@code max-concurrent-calls}
+ * request threads and the remaining ones keep serving cache hits.
+ */
+@Component
+public class UpstreamBulkhead {
+
+    private final Semaphore permits;
+    private final Duration maxWait;
+    private final Counter rejected;
+
+    public UpstreamBulkhead(MeterRegistry meterRegistry,
+                            @Value("${weather.upstream.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+                            @Value("${weather.upstream.bulkhead.max-wait:100ms}") Duration maxWait) {
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.maxWait = maxWait;
+        this.rejected = Counter.builder("weather.upstream.bulkhead.rejected")
+                .description("Upstream calls rejected because the bulkhead was full")
+                .register(meterRegistry);
+        Gauge.builder("weather.upstream.bulkhead.available", permits, Semaphore::availablePermits)
+                .description("Upstream calls that can start without waiting for the bulkhead")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a permit, waiting at most {@code max-wait}. Every acquired permit must be given back with {@link #release()}.
+     *
+     * @throws UpstreamUnavailableException if no permit became free in time
+     */
+    public void acquire() {
+        try {
+            if (permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        throw new UpstreamUnavailableException("too many concurrent upstream calls.", Duration.ofSeconds(1));
+    }
+
+    /**
+     * Takes a permit only if one is free right now, for optional calls that are skipped rather than queued.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
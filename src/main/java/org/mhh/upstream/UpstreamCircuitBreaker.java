@@ -0,0 +1,195 @@
+package org.mhh.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.exception.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Circuit breaker around the upstream API, over a rolling window of the last {@code window-size} calls.
+ * <p>
+ * CLOSED: calls go through. Once the window holds at least {@code minimum-calls} calls and the share of failed
+ * calls or of calls slower than {@code slow-call-threshold} reaches its threshold, the breaker opens.
+ * OPEN: calls fail fast with {@link UpstreamUnavailableException} for {@code open-duration}; refresh-ahead
+ * reloads failing this way keep serving the cached value.
+ * HALF_OPEN: up to {@code half-open-probes} trial calls go through. If they all succeed in time the breaker
+ * closes with an empty window, a single failed or slow probe opens it again.
+ * <p>
+ * Each permission carries the state it was granted in, and an outcome only counts toward that state: a call let
+ * through while CLOSED that finishes after the breaker moved on is neither a window entry nor a probe.
+ */
+@Component
+public class UpstreamCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamCircuitBreaker.class);
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    // outcome flags of the last window.length calls, used as a ring buffer
+    private final byte[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final double slowCallRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final Counter rejected;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    // incremented on every state change; a permission is the value at the time it was granted
+    private long generation;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public UpstreamCircuitBreaker(MeterRegistry meterRegistry,
+                                  @Value("${weather.upstream.circuit-breaker.window-size:20}") int windowSize,
+                                  @Value("${weather.upstream.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                                  @Value("${weather.upstream.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+                                  @Value("${weather.upstream.circuit-breaker.slow-call-threshold:2s}") Duration slowCallThreshold,
+                                  @Value("${weather.upstream.circuit-breaker.slow-call-rate-threshold:80}") double slowCallRateThreshold,
+                                  @Value("${weather.upstream.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                  @Value("${weather.upstream.circuit-breaker.half-open-probes:3}") int halfOpenProbes) {
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.rejected = Counter.builder("weather.upstream.circuit.rejected")
+                .description("Upstream calls rejected by the open circuit breaker")
+                .register(meterRegistry);
+        for (State gaugeState : State.values()) {
+            Gauge.builder("weather.upstream.circuit.state", this, breaker -> breaker.getState() == gaugeState ? 1 : 0)
+                    .description("1 for the current state of the upstream circuit breaker, 0 for the others")
+                    .tag("state", gaugeState.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Lets a call through or rejects it. Every permitted call must be followed by {@link #onResult} or
+     * {@link #releasePermission} with the returned permission.
+     *
+     * @return the permission, which ties the call's outcome to the state it was let through in
+     * @throws UpstreamUnavailableException while the breaker is open or all half-open probes are in flight
+     */
+    public synchronized long acquirePermission() {
+        if (state == State.OPEN) {
+            long remaining = openedAt + openDurationNanos - System.nanoTime();
+            if (remaining > 0) {
+                rejected.increment();
+                throw new UpstreamUnavailableException("upstream circuit breaker is open.", Duration.ofNanos(remaining));
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                rejected.increment();
+                throw new UpstreamUnavailableException("upstream circuit breaker is half-open, waiting for trial calls.",
+                        Duration.ofSeconds(1));
+            }
+            probesStarted++;
+        }
+        return generation;
+    }
+
+    /**
+     * Gives back a permission for a call that was not made after all.
+     */
+    public synchronized void releasePermission(long permission) {
+        if (permission == generation && state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param failed whether the call failed in a way that says something about upstream health
+     */
+    public synchronized void onResult(long permission, long durationNanos, boolean failed) {
+        if (permission != generation) {
+            // let through in an earlier state, so it is neither part of the current window nor a probe
+            return;
+        }
+        boolean slow = durationNanos >= slowCallThresholdNanos;
+        switch (state) {
+            case HALF_OPEN -> {
+                if (failed || slow) {
+                    transitionTo(State.OPEN);
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+                if (recorded >= minimumCalls
+                        && (failures * 100.0 / recorded >= failureRateThreshold
+                        || slowCalls * 100.0 / recorded >= slowCallRateThreshold)) {
+                    log.warn("Opening upstream circuit breaker: {} of the last {} calls failed, {} were slow",
+                            failures, recorded, slowCalls);
+                    transitionTo(State.OPEN);
+                }
+            }
+            case OPEN -> {
+                // unreachable: the breaker grants no permissions while open
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(byte outcome) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        next = (next + 1) % window.length;
+    }
+
+    private void transitionTo(State newState) {
+        if (newState != State.OPEN || state != State.CLOSED) {
+            log.info("Upstream circuit breaker {} -> {}", state, newState);
+        }
+        state = newState;
+        generation++;
+        switch (newState) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            case CLOSED -> {
+                next = 0;
+                recorded = 0;
+                failures = 0;
+                slowCalls = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.mhh.upstream;
+
+import org.mhh.exception.UpstreamUnavailableException;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Everything an upstream call has to pass, cheapest rejection first: the {@link UpstreamCircuitBreaker}, the
+ * request quota of the {@link UpstreamRateLimiter} and the concurrency cap of the {@link UpstreamBulkhead}.
+ */
+@Component
+public class UpstreamGuard {
+
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final UpstreamRateLimiter rateLimiter;
+    private final UpstreamBulkhead bulkhead;
+
+    public UpstreamGuard(UpstreamCircuitBreaker circuitBreaker, UpstreamRateLimiter rateLimiter, UpstreamBulkhead bulkhead) {
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Runs {@code upstreamCall} once it is allowed to.
+     *
+     * @param isFailure which exceptions of the call count as upstream failures for the circuit breaker
+     * @throws UpstreamUnavailableException if the call was not allowed; it was not made in that case
+     */
+    public <T> T call(UpstreamPriority priority, Supplier<T> upstreamCall, Predicate<RuntimeException> isFailure) {
+        long permission = circuitBreaker.acquirePermission();
+        try {
+            rateLimiter.acquire(priority);
+        } catch (UpstreamUnavailableException e) {
+            circuitBreaker.releasePermission(permission);
+            throw e;
+        }
+        try {
+            bulkhead.acquire();
+        } catch (UpstreamUnavailableException e) {
+            // the call is not made, so it must not use up request quota
+            rateLimiter.release();
+            circuitBreaker.releasePermission(permission);
+            throw e;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = upstreamCall.get();
+            circuitBreaker.onResult(permission, System.nanoTime() - start, false);
+            return result;
+        } catch (RuntimeException e) {
+            circuitBreaker.onResult(permission, System.nanoTime() - start, isFailure.test(e));
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Takes request quota and a bulkhead permit for an extra upstream call made within an allowed one, such as a
+     * hedged request or a failover to another provider. Extra calls are skipped rather than queued when either
+     * is exhausted. The permit must be given back with {@link #releaseExtraCall()} once the call has finished.
+     */
+    public boolean tryAcquireExtraCall() {
+        if (!rateLimiter.tryAcquire()) {
+            return false;
+        }
+        if (!bulkhead.tryAcquire()) {
+            rateLimiter.release();
+            return false;
+        }
+        return true;
+    }
+
+    public void releaseExtraCall() {
+        bulkhead.release();
+    }
+
+    /**
+     * Called when the upstream itself reported that the request quota is exceeded.
+     */
+    public void onQuotaExceeded() {
+        rateLimiter.backOff();
+    }
+}
@@ -0,0 +1,17 @@
+package org.mhh.upstream;
+
+/**
+ * Order in which calls waiting for upstream quota are served.
+ */
+public enum UpstreamPriority {
+
+    /**
+     * Cache misses a client is waiting for.
+     */
+    INTERACTIVE,
+
+    /**
+     * Refresh-ahead reloads and startup warm-up; only served while no interactive call is waiting.
+     */
+    BACKGROUND
+}
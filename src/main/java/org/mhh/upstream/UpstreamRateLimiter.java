@@ -0,0 +1,219 @@
+package org.mhh.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhh.exception.UpstreamRateLimitedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket in front of the upstream API: {@code calls-per-minute} tokens are added evenly over time, up to
+ * {@code burst}, and every upstream call takes one.
+ * <p>
+ * Callers that find the bucket empty queue per {@link UpstreamPriority}; a background call is only served while
+ * no interactive call is waiting, and calls of the same priority are served in arrival order. A call is rejected
+ * with {@link UpstreamRateLimitedException} straight away when its queue already holds {@code max-queue} calls,
+ * or once it has waited its priority's maximum wait. A rejected refresh-ahead reload keeps the cached value, so
+ * saturation degrades to stale data rather than errors wherever there is something cached.
+ */
+@Component
+public class UpstreamRateLimiter {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitsChanged = lock.newCondition();
+    private final Map<UpstreamPriority, ArrayDeque<Object>> waiting = new EnumMap<>(UpstreamPriority.class);
+    private final Map<UpstreamPriority, Duration> maxWait = new EnumMap<>(UpstreamPriority.class);
+    private final Map<UpstreamPriority, Counter> rejected = new EnumMap<>(UpstreamPriority.class);
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxQueue;
+    private double tokens;
+    private long lastRefill;
+
+    public UpstreamRateLimiter(MeterRegistry meterRegistry,
+                               @Value("${weather.upstream.rate-limit.calls-per-minute:60}") double callsPerMinute,
+                               @Value("${weather.upstream.rate-limit.burst:10}") int burst,
+                               @Value("${weather.upstream.rate-limit.max-queue:50}") int maxQueue,
+                               @Value("${weather.upstream.rate-limit.interactive-max-wait:2s}") Duration interactiveMaxWait,
+                               @Value("${weather.upstream.rate-limit.background-max-wait:30s}") Duration backgroundMaxWait) {
+        this.tokensPerNano = callsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = burst;
+        this.maxQueue = maxQueue;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        maxWait.put(UpstreamPriority.INTERACTIVE, interactiveMaxWait);
+        maxWait.put(UpstreamPriority.BACKGROUND, backgroundMaxWait);
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            waiting.put(priority, new ArrayDeque<>());
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            rejected.put(priority, Counter.builder("weather.upstream.ratelimit.rejected")
+                    .description("Upstream calls rejected because the request quota was exhausted")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            Gauge.builder("weather.upstream.ratelimit.queue", this, limiter -> limiter.queueDepth(priority))
+                    .description("Upstream calls waiting for request quota")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("weather.upstream.ratelimit.tokens", this, UpstreamRateLimiter::availableTokens)
+                .description("Upstream calls that can be made right now without waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token, waiting for one if necessary.
+     *
+     * @throws UpstreamRateLimitedException if the queue is full or no token became available in time
+     */
+    public void acquire(UpstreamPriority priority) {
+        lock.lock();
+        try {
+            refill();
+            if (tokens >= 1 && !hasWaitersAtOrAbove(priority)) {
+                tokens -= 1;
+                return;
+            }
+            ArrayDeque<Object> queue = waiting.get(priority);
+            if (queue.size() >= maxQueue) {
+                throw reject(priority, "upstream request queue is full.");
+            }
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            try {
+                long deadline = System.nanoTime() + maxWait.get(priority).toNanos();
+                while (true) {
+                    refill();
+                    if (tokens >= 1 && isNext(ticket, priority)) {
+                        tokens -= 1;
+                        return;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw reject(priority, "upstream request quota exhausted.");
+                    }
+                    long untilNextToken = tokens >= 1 ? remaining : (long) Math.ceil((1 - tokens) / tokensPerNano);
+                    permitsChanged.awaitNanos(Math.max(1, Math.min(remaining, untilNextToken)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(priority, "interrupted while waiting for upstream request quota.");
+            } finally {
+                queue.remove(ticket);
+                permitsChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a token only if one is available right now and no call is queued for one, so optional calls never
+     * delay required ones.
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            refill();
+            if (tokens >= 1 && !hasWaitersAtOrAbove(UpstreamPriority.BACKGROUND)) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a token taken for a call that was then not made, for example because the bulkhead was full.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            refill();
+            tokens = Math.min(burst, tokens + 1);
+            permitsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the bucket after the upstream answered 429, so calls resume at the configured rate instead of
+     * bursting into the limit again.
+     */
+    public void backOff() {
+        lock.lock();
+        try {
+            refill();
+            tokens = Math.min(tokens, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double availableTokens() {
+        lock.lock();
+        try {
+            refill();
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queueDepth(UpstreamPriority priority) {
+        lock.lock();
+        try {
+            return waiting.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    private boolean hasWaitersAtOrAbove(UpstreamPriority priority) {
+        for (UpstreamPriority other : UpstreamPriority.values()) {
+            if (!waiting.get(other).isEmpty()) {
+                return true;
+            }
+            if (other == priority) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNext(Object ticket, UpstreamPriority priority) {
+        for (UpstreamPriority other : UpstreamPriority.values()) {
+            if (other == priority) {
+                return waiting.get(priority).peekFirst() == ticket;
+            }
+            if (!waiting.get(other).isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private UpstreamRateLimitedException reject(UpstreamPriority priority, String reason) {
+        rejected.get(priority).increment();
+        long nanosPerToken = (long) (1 / tokensPerNano);
+        return new UpstreamRateLimitedException(reason, Duration.ofNanos(nanosPerToken));
+    }
+}
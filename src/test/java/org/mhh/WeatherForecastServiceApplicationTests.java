@@ -0,0 +1,12 @@
+package org.mhh;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class WeatherForecastServiceApplicationTests {
+
+    @Test
+    void contextLoads() {
+    }
+}
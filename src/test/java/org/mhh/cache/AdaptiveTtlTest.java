@@ -0,0 +1,73 @@
+package org.mhh.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTtlTest {
+
+    private static final Instant START = Instant.parse("2024-03-15T12:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HotCityTracker hotCityTracker = new HotCityTracker(
+            new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))),
+            new UnknownCityCache(new CaffeineCacheManager()), 100);
+    private final AdaptiveTtl adaptiveTtl = new AdaptiveTtl(hotCityTracker, meterRegistry, Duration.ofMinutes(10), 100,
+            Duration.ofMinutes(5), Duration.ofMinutes(30), 0.5, 5, 1.0, 10);
+
+    @Test
+    void ttlFor_GrowsForCalmPopularCitiesAndShrinksWhenWeatherChanges() {
+        requests("Tehran", 10);
+        assertEquals(Duration.ofMinutes(10), adaptiveTtl.ttlFor("tehran"));
+
+        adaptiveTtl.onFetched("tehran", weather(20.0, START));
+        assertEquals(Duration.ofMinutes(10), adaptiveTtl.ttlFor("tehran"));
+        adaptiveTtl.onFetched("tehran", weather(20.1, START.plus(Duration.ofMinutes(10))));
+        assertEquals(Duration.ofMinutes(14), adaptiveTtl.ttlFor("tehran"));
+        adaptiveTtl.onFetched("tehran", weather(20.1, START.plus(Duration.ofMinutes(24))));
+        assertEquals(Duration.ofMinutes(21), adaptiveTtl.ttlFor("tehran"));
+
+        // temperature moved by four thresholds: the TTL halves, but never below min-ttl
+        adaptiveTtl.onFetched("tehran", weather(22.1, START.plus(Duration.ofMinutes(45))));
+        assertEquals(Duration.ofMinutes(10).plusSeconds(30), adaptiveTtl.ttlFor("tehran"));
+        adaptiveTtl.onFetched("tehran", weather(18.0, START.plus(Duration.ofMinutes(56))));
+        assertEquals(Duration.ofMinutes(5).plusSeconds(15), adaptiveTtl.ttlFor("tehran"));
+        adaptiveTtl.onFetched("tehran", weather(22.0, START.plus(Duration.ofMinutes(61).plusSeconds(15))));
+        assertEquals(Duration.ofMinutes(5), adaptiveTtl.ttlFor("tehran"));
+        // refetched a minute later, so the entry was evicted before its TTL: not the adaptive TTL's doing
+        adaptiveTtl.onFetched("tehran", weather(22.0, START.plus(Duration.ofMinutes(62).plusSeconds(15))));
+
+        // entries that lived 14, 21 and 10.5 minutes saved calls; the 5.25 minute one cost 0.475 calls extra
+        assertEquals(0.4 + 1.1 + 0.05, meterRegistry.get("weather.cache.adaptive.calls.saved").counter().count(), 1e-9);
+        assertEquals(0.475, meterRegistry.get("weather.cache.adaptive.calls.extra").counter().count(), 1e-9);
+    }
+
+    @Test
+    void ttlFor_StretchesTowardsMaxForRarelyRequestedCities() {
+        requests("Paris", 5);
+
+        adaptiveTtl.onFetched("paris", weather(12.0, START));
+        adaptiveTtl.onFetched("oslo", weather(2.0, START));
+
+        assertEquals(Duration.ofMinutes(20), adaptiveTtl.ttlFor("paris"));
+        assertEquals(Duration.ofMinutes(30), adaptiveTtl.ttlFor("oslo"));
+    }
+
+    private void requests(String city, int count) {
+        for (int i = 0; i < count; i++) {
+            hotCityTracker.recordAccess(city);
+        }
+    }
+
+    private static WeatherResponseDTO weather(double temperature, Instant fetchedAt) {
+        return new WeatherResponseDTO("Tehran", temperature, "clear sky", 30, 2.0, fetchedAt, false);
+    }
+}
@@ -0,0 +1,114 @@
+package org.mhh.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.service.WeatherService;
+import org.mhh.upstream.UpstreamPriority;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheWarmerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final CityKeyGenerator cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+    private final UnknownCityCache unknownCities = new UnknownCityCache(new CaffeineCacheManager());
+    private final HotCityTracker hotCityTracker = new HotCityTracker(cityKeys, unknownCities, 10);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void warmUp_LoadsHistoryBeforeHotCityFileAndTurnsReady() throws Exception {
+        when(weatherService.fetchWeatherData(anyString(), eq(UpstreamPriority.BACKGROUND)))
+                .thenAnswer(invocation -> new WeatherResponseDTO(invocation.getArgument(0), 20.0, "clear sky", 30, 1.0, Instant.now(), false));
+        Files.write(tempDir.resolve("history.txt"), List.of("Rasht", "Tehran"));
+        CacheWarmer warmer = warmer("# comment\ntehran\nLondon\nParis\nBerlin\n", 3, 0.5);
+
+        assertEquals(Status.OUT_OF_SERVICE, warmer.health().getStatus());
+        warmer.warmUp();
+
+        assertEquals(Status.UP, warmer.health().getStatus());
+        verify(weatherService).fetchWeatherData("Rasht", UpstreamPriority.BACKGROUND);
+        verify(weatherService).fetchWeatherData("Tehran", UpstreamPriority.BACKGROUND);
+        verify(weatherService).fetchWeatherData("London", UpstreamPriority.BACKGROUND);
+        verifyNoMoreInteractions(weatherService);
+    }
+
+    @Test
+    void warmUp_SkipsCitiesKnownToBeUnknown() {
+        when(weatherService.fetchWeatherData(anyString(), eq(UpstreamPriority.BACKGROUND)))
+                .thenAnswer(invocation -> new WeatherResponseDTO(invocation.getArgument(0), 20.0, "clear sky", 30, 1.0, Instant.now(), false));
+        unknownCities.markUnknown(cityKeys.keyFor("Atlantis"));
+        CacheWarmer warmer = warmer("Atlantis\nLondon\n", 2, 1.0);
+
+        warmer.warmUp();
+
+        verify(weatherService).fetchWeatherData("London", UpstreamPriority.BACKGROUND);
+        verifyNoMoreInteractions(weatherService);
+        assertEquals(1, warmer.health().getDetails().get("planned"));
+    }
+
+    @Test
+    void isReady_WaitsForConfiguredFraction() {
+        when(weatherService.fetchWeatherData(anyString(), eq(UpstreamPriority.BACKGROUND))).thenThrow(CityNotFoundException.withoutStackTrace("x"));
+        CacheWarmer warmer = warmer("London\nParis\n", 2, 0.5);
+
+        assertFalse(warmer.isReady());
+        warmer.warmUp();
+
+        assertTrue(warmer.isReady(), "an exhausted warm-up must not keep the service out of rotation");
+        assertEquals(0, warmer.health().getDetails().get("loaded"));
+    }
+
+    @Test
+    void saveHistory_WritesMostRequestedCities() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            hotCityTracker.recordAccess("Tabriz");
+        }
+        hotCityTracker.recordAccess("Yazd");
+        CacheWarmer warmer = warmer("", 1, 1.0);
+
+        warmer.saveHistory();
+
+        assertEquals(List.of("Tabriz"), Files.readAllLines(tempDir.resolve("history.txt")));
+    }
+
+    private CacheWarmer warmer(String hotCities, int topN, double readyFraction) {
+        WeatherCacheAccess weatherCache = new WeatherCacheAccess(new ConcurrentMapCacheManager("weatherCache"), cityKeys);
+        ClusterRouting standalone = new ClusterRouting(null, cityKeys, weatherCache, new SimpleMeterRegistry(), new ServingThreads(false),
+                false, "", "", "", "", 128, 100, Duration.ofSeconds(30), Duration.ofMinutes(10));
+        return new CacheWarmer(weatherService, weatherCache, hotCityTracker, cityKeys, standalone, executor, true,
+                new ByteArrayResource(hotCities.getBytes(StandardCharsets.UTF_8)), tempDir.resolve("history.txt"),
+                topN, 1000, readyFraction, Duration.ofMinutes(1));
+    }
+}
@@ -0,0 +1,46 @@
+package org.mhh.cache;
+
+import org.junit.jupiter.api.Test;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CityKeyGeneratorTest {
+
+    private final CityKeyGenerator cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+
+    @Test
+    void keyFor_FoldsSpellingsOfTheSameCityToOneKey() {
+        for (String spelling : new String[]{"Tehran", " tehran ", "TEHRAN,", "Teheran", "تهران"}) {
+            assertEquals("tehran", cityKeys.keyFor(spelling), spelling);
+        }
+        assertEquals("new york", cityKeys.keyFor("NYC"));
+        assertEquals("new york", cityKeys.keyFor("new   york."));
+        assertEquals("springfield", cityKeys.keyFor(" Springfield "), "unknown cities still get a folded key");
+        assertEquals("", cityKeys.keyFor(" ,. "));
+    }
+
+    @Test
+    void keyFor_IsIndependentOfDefaultLocaleAndNormalizationForm() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertEquals("istanbul", cityKeys.keyFor("ISTANBUL"));
+            assertEquals("istanbul", cityKeys.keyFor("İstanbul"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+        // precomposed and combining diaeresis
+        assertEquals("zurich", cityKeys.keyFor("Z\u00fcrich"));
+        assertEquals("zurich", cityKeys.keyFor("Zu\u0308rich"));
+    }
+
+    @Test
+    void queryFor_UsesCanonicalNameForKnownCities() {
+        assertEquals("Mumbai", cityKeys.queryFor(" bombay"));
+        assertEquals("Springfield", cityKeys.queryFor(" Springfield, "));
+    }
+}
@@ -0,0 +1,58 @@
+package org.mhh.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import org.mhh.config.CacheConfiguration;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotCityTrackerTest {
+
+    private final CityKeyGenerator cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+
+    @Test
+    void topCities_KeepsMostRequestedCitiesUnderChurn() {
+        HotCityTracker tracker = new HotCityTracker(cityKeys, new UnknownCityCache(new CaffeineCacheManager()), 5);
+        for (int round = 0; round < 200; round++) {
+            tracker.recordAccess("Tehran");
+            tracker.recordAccess("tehran ");
+            if (round % 2 == 0) {
+                tracker.recordAccess("London");
+            }
+            tracker.recordAccess("one-off-" + round);
+        }
+
+        List<String> top = tracker.topCities(2);
+        assertEquals(2, top.size());
+        assertEquals("Tehran", top.get(0));
+        assertEquals("London", top.get(1));
+        assertTrue(tracker.estimate("Tehran") >= 400);
+    }
+
+    @Test
+    void recordAccess_SkipsUnknownCitiesAndMalformedCellKeys() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder().recordStats());
+        UnknownCityCache unknownCities = new UnknownCityCache(cacheManager);
+        HotCityTracker tracker = new HotCityTracker(cityKeys, unknownCities, 5);
+        tracker.recordAccess("Atlantis");
+        unknownCities.markUnknown(cityKeys.keyFor("Atlantis"));
+        for (int i = 0; i < 10; i++) {
+            tracker.recordAccess("Atlantis");
+            tracker.recordAccess("geo:not-a-geohash!");
+        }
+        tracker.recordAccess("Tehran");
+
+        assertEquals(List.of("Tehran"), tracker.topCities(5));
+        assertEquals(1, tracker.estimate("Atlantis"));
+        assertEquals(0, tracker.estimate("geo:not-a-geohash!"));
+        assertEquals(0, ((Cache<?, ?>) cacheManager.getCache(CacheConfiguration.UNKNOWN_CITY_CACHE).getNativeCache())
+                .stats().requestCount(), "tracking does not count as unknownCityCache lookups");
+    }
+}
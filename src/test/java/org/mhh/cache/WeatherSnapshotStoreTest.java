@@ -0,0 +1,120 @@
+package org.mhh.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mhh.config.CacheConfiguration;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.geo.GeoGrid;
+import org.mhh.service.WeatherService;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherSnapshotStoreTest {
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void restart_RestoresEntriesStillWithinTtl() {
+        Path file = dataDir.resolve("weather-cache.bin");
+        CaffeineCacheManager before = cacheManager();
+        WeatherSnapshotStore store = new WeatherSnapshotStore(before, file);
+        store.afterSingletonsInstantiated();
+        fetched(store, before, "tehran", weather("Tehran", 20.0, Instant.now().minusSeconds(120)));
+        fetched(store, before, "tehran", weather("Tehran", 21.0, Instant.now()));
+        fetched(store, before, "paris", weather("Paris", 12.0, Instant.now().minus(Duration.ofMinutes(20))));
+        store.close();
+
+        CaffeineCacheManager after = cacheManager();
+        new WeatherSnapshotStore(after, file).afterSingletonsInstantiated();
+
+        Cache weatherCache = after.getCache(CacheConfiguration.WEATHER_CACHE);
+        assertEquals(21.0, weatherCache.get("tehran", WeatherResponseDTO.class).getTemperature());
+        assertNull(weatherCache.get("paris"));
+    }
+
+    @Test
+    void restart_RestoresSnappedCellOfCoordinateLookups() {
+        Path file = dataDir.resolve("weather-cache.bin");
+        CaffeineCacheManager before = cacheManager();
+        WeatherSnapshotStore store = new WeatherSnapshotStore(before, file);
+        store.afterSingletonsInstantiated();
+        fetched(store, before, "geo:tnke1", weather("Tehran", 21.0, Instant.now()).withCell(GeoGrid.decode("tnke1")));
+        fetched(store, before, "tehran", weather("Tehran", 21.0, Instant.now()));
+        store.close();
+
+        CaffeineCacheManager after = cacheManager();
+        new WeatherSnapshotStore(after, file).afterSingletonsInstantiated();
+
+        Cache weatherCache = after.getCache(CacheConfiguration.WEATHER_CACHE);
+        assertEquals(GeoGrid.decode("tnke1"), weatherCache.get("geo:tnke1", WeatherResponseDTO.class).getCell());
+        assertNull(weatherCache.get("tehran", WeatherResponseDTO.class).getCell());
+    }
+
+    @Test
+    void restart_IgnoresTornRecordAtEndOfFile() throws IOException {
+        Path file = dataDir.resolve("weather-cache.bin");
+        CaffeineCacheManager before = cacheManager();
+        WeatherSnapshotStore store = new WeatherSnapshotStore(before, file);
+        store.afterSingletonsInstantiated();
+        store.onFetched("london", weather("London", 15.5, Instant.now()));
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        CaffeineCacheManager after = cacheManager();
+        WeatherSnapshotStore restarted = new WeatherSnapshotStore(after, file);
+        restarted.afterSingletonsInstantiated();
+
+        assertEquals(15.5, after.getCache(CacheConfiguration.WEATHER_CACHE).get("london", WeatherResponseDTO.class).getTemperature());
+        restarted.close();
+        assertTrue(Files.size(file) < 100, "compaction should drop the torn record");
+    }
+
+    @Test
+    void restart_IgnoresTornRecordHeaderAtEndOfFile() throws IOException {
+        Path file = dataDir.resolve("weather-cache.bin");
+        CaffeineCacheManager before = cacheManager();
+        WeatherSnapshotStore store = new WeatherSnapshotStore(before, file);
+        store.afterSingletonsInstantiated();
+        store.onFetched("london", weather("London", 15.5, Instant.now()));
+        store.onFetched("paris", weather("Paris", 12.0, Instant.now()));
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        CaffeineCacheManager after = cacheManager();
+        WeatherSnapshotStore restarted = new WeatherSnapshotStore(after, file);
+        restarted.afterSingletonsInstantiated();
+
+        Cache weatherCache = after.getCache(CacheConfiguration.WEATHER_CACHE);
+        assertEquals(15.5, weatherCache.get("london", WeatherResponseDTO.class).getTemperature());
+        assertEquals(12.0, weatherCache.get("paris", WeatherResponseDTO.class).getTemperature());
+        restarted.close();
+    }
+
+    private void fetched(WeatherSnapshotStore store, CaffeineCacheManager cacheManager, String key, WeatherResponseDTO weather) {
+        cacheManager.getCache(CacheConfiguration.WEATHER_CACHE).put(key, weather);
+        store.onFetched(key, weather);
+    }
+
+    private CaffeineCacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        new CacheConfiguration()
+                .weatherCacheCustomizer(new DefaultListableBeanFactory().getBeanProvider(WeatherService.class),
+                        new DefaultListableBeanFactory().getBeanProvider(AdaptiveTtl.class), Runnable::run, 100,
+                        Duration.ofMinutes(10), false, Duration.ofMinutes(2), Duration.ofMinutes(30))
+                .customize(cacheManager);
+        return cacheManager;
+    }
+
+    private WeatherResponseDTO weather(String city, double temperature, Instant fetchedAt) {
+        return new WeatherResponseDTO(city, temperature, "clear sky", 40, 3.0, fetchedAt, false);
+    }
+}
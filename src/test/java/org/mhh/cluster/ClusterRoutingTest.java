@@ -0,0 +1,229 @@
+package org.mhh.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.exception.UpstreamUnavailableException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.CacheOperationInvocationContext;
+import org.springframework.cache.interceptor.CacheableOperation;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+class ClusterRoutingTest {
+
+    private static final String SELF = "http://localhost:8081";
+    private static final String PEER = "http://localhost:8082";
+    private static final String SECRET = "s3cret";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CityKeyGenerator cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MockRestServiceServer peer;
+    private final ExecutorService handoffExecutor = Executors.newSingleThreadExecutor();
+    private WeatherCacheAccess weatherCache;
+    private ClusterRouting routing;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        peer = MockRestServiceServer.bindTo(restTemplate).build();
+        weatherCache = new WeatherCacheAccess(new CaffeineCacheManager("weatherCache"), cityKeys);
+        routing = new ClusterRouting(restTemplate, cityKeys, weatherCache, meterRegistry, handoffExecutor, true, SELF, SECRET,
+                SELF + "," + PEER + "/", "", 128, 100, Duration.ofSeconds(30), Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        handoffExecutor.shutdownNow();
+    }
+
+    @Test
+    void fetchFromOwner_ForwardsMissToOwnerAndKeepsNearCopy() throws Exception {
+        String key = keyOwnedBy(PEER);
+        WeatherResponseDTO weather = weather(key);
+        peer.expect(once(), requestTo(PEER + ClusterRouting.WEATHER_PATH + "?key=" + key))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header(ClusterRouting.SECRET_HEADER, SECRET))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(weather), MediaType.APPLICATION_JSON));
+        AtomicInteger localFetches = new AtomicInteger();
+
+        assertFalse(routing.isLocal(key));
+        assertEquals(weather, routing.fetchFromOwner(key, () -> weather(key + localFetches.incrementAndGet())));
+        assertEquals(weather, routing.fetchFromOwner(key, () -> weather(key + localFetches.incrementAndGet())));
+
+        peer.verify();
+        assertEquals(0, localFetches.get());
+        assertEquals(1, meterRegistry.get("weather.cluster.requests").tag("route", "near_cache").counter().count());
+        assertTrue(routing.serveForPeer(() -> routing.isLocal(key)), "requests served for a peer are never forwarded again");
+    }
+
+    @Test
+    void fetchFromOwner_FetchesLocallyWhenOwnerIsDownButPassesOnUnknownCitiesAndOverload() {
+        String down = keyOwnedBy(PEER);
+        String unknown = keyOwnedBy(PEER, down);
+        String overloaded = keyOwnedBy(PEER, down, unknown);
+        peer.expect(requestTo(PEER + ClusterRouting.WEATHER_PATH + "?key=" + down))
+                .andRespond(withException(new IOException("Connection refused")));
+        peer.expect(requestTo(PEER + ClusterRouting.WEATHER_PATH + "?key=" + unknown))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+        HttpHeaders retryAfter = new HttpHeaders();
+        retryAfter.set(HttpHeaders.RETRY_AFTER, "7");
+        peer.expect(requestTo(PEER + ClusterRouting.WEATHER_PATH + "?key=" + overloaded))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).headers(retryAfter));
+
+        assertEquals(weather(down), routing.fetchFromOwner(down, () -> weather(down)));
+        assertThrows(CityNotFoundException.class, () -> routing.fetchFromOwner(unknown, () -> fail("must not fetch locally")));
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> routing.fetchFromOwner(overloaded, () -> fail("must not add upstream load while the owner is throttled")));
+        assertEquals(Duration.ofSeconds(7), e.getRetryAfter());
+        assertEquals(1, meterRegistry.get("weather.cluster.requests").tag("route", "fallback").counter().count());
+    }
+
+    @Test
+    void historyFromOwner_AsksTheOwnerAndReportsItWhenUnreachable() {
+        String key = keyOwnedBy(PEER);
+        String down = keyOwnedBy(PEER, key);
+        Instant from = Instant.parse("2024-03-15T00:00:00Z");
+        peer.expect(requestTo(PEER + ClusterRouting.HISTORY_PATH + "?key=" + key + "&from=2024-03-15T00:00:00Z&samples=true"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header(ClusterRouting.SECRET_HEADER, SECRET))
+                .andRespond(withSuccess("{\"cityName\": \"" + key + "\", \"count\": 2}", MediaType.APPLICATION_JSON));
+        peer.expect(requestTo(startsWith(PEER + ClusterRouting.HISTORY_PATH + "?key=" + down)))
+                .andRespond(withException(new IOException("Connection refused")));
+
+        assertEquals(2, routing.historyFromOwner(key, from, null, true).getCount());
+        assertThrows(ExternalApiException.class, () -> routing.historyFromOwner(down, null, null, false));
+        peer.verify();
+    }
+
+    @Test
+    void acceptHandoff_RequiresTheSecretAndRefusesEntriesFetchedInTheFutureOrTooLongAgo() {
+        String key = keyOwnedBy(SELF);
+        Instant now = Instant.now();
+
+        assertTrue(routing.isTrustedPeer(SECRET));
+        assertFalse(routing.isTrustedPeer(null));
+        assertFalse(routing.isTrustedPeer("s3cre"));
+        assertFalse(routing.acceptHandoff(key, weather(key, now.plus(Duration.ofHours(1)))), "would outlive every fresher entry");
+        assertFalse(routing.acceptHandoff(key, weather(key, now.minus(Duration.ofMinutes(11)))), "already expired");
+        assertFalse(routing.acceptHandoff(key, weather(key, null)));
+        assertNull(weatherCache.peek(key));
+
+        assertTrue(routing.acceptHandoff(key, weather(key, now.minus(Duration.ofMinutes(1)))));
+        assertNotNull(weatherCache.peek(key));
+    }
+
+    @Test
+    void cacheResolver_BypassesWeatherCacheForKeysOwnedElsewhere() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("weatherCache");
+        ClusterCacheResolver resolver = new ClusterCacheResolver(cacheManager, routing);
+        CacheableOperation operation = new CacheableOperation.Builder() {{
+            setName("getWeatherData");
+            setCacheName("weatherCache");
+        }}.build();
+
+        Collection<? extends Cache> local = resolver.resolveCaches(invocation(operation, keyOwnedBy(SELF)));
+        Collection<? extends Cache> remote = resolver.resolveCaches(invocation(operation, keyOwnedBy(PEER)));
+
+        assertSame(cacheManager.getCache("weatherCache"), local.iterator().next());
+        assertInstanceOf(NoOpCache.class, remote.iterator().next());
+        assertSame(local, resolver.resolveCaches(invocation(operation, keyOwnedBy(SELF))), "resolved caches are reused");
+    }
+
+    @Test
+    void updateMembers_HandsEntriesToTheirNewOwnerInOneBatch() throws Exception {
+        List<String> keys = IntStream.range(0, 50).mapToObj(i -> "city" + i).toList();
+        ConsistentHashRing twoMembers = new ConsistentHashRing(List.of(SELF, PEER), 128);
+        List<String> moved = keys.stream().filter(key -> twoMembers.ownerOf(key).equals(PEER)).toList();
+        RestTemplate restTemplate = new RestTemplate();
+        peer = MockRestServiceServer.bindTo(restTemplate).build();
+        peer.expect(once(), requestTo(PEER + ClusterRouting.WEATHER_PATH))
+                .andExpect(method(HttpMethod.PUT))
+                .andExpect(header(ClusterRouting.SECRET_HEADER, SECRET))
+                .andExpect(jsonPath("$", aMapWithSize(moved.size())))
+                .andRespond(withSuccess(String.valueOf(moved.size()), MediaType.APPLICATION_JSON));
+        ClusterRouting alone = new ClusterRouting(restTemplate, cityKeys, weatherCache, meterRegistry, handoffExecutor, true, SELF,
+                SECRET, SELF, "", 128, 100, Duration.ofSeconds(30), Duration.ofMinutes(10));
+        keys.forEach(key -> weatherCache.put(key, weather(key)));
+        assertTrue(keys.stream().allMatch(alone::isLocal));
+
+        alone.updateMembers(List.of(SELF, PEER));
+        handoffExecutor.shutdown();
+        assertTrue(handoffExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        for (String key : keys) {
+            if (moved.contains(key)) {
+                assertFalse(alone.isLocal(key));
+                assertNull(weatherCache.peek(key), "entries owned elsewhere are dropped");
+            } else {
+                assertNotNull(weatherCache.peek(key));
+            }
+        }
+        peer.verify();
+        assertFalse(moved.isEmpty());
+        assertEquals(moved.size(), meterRegistry.get("weather.cluster.handoffs").counter().count());
+        assertFalse(alone.acceptHandoff(moved.get(0), weather(moved.get(0), Instant.now())), "keys owned elsewhere are refused");
+    }
+
+    private static CacheOperationInvocationContext<?> invocation(CacheableOperation operation, String city) {
+        CacheOperationInvocationContext<?> context = mock(CacheOperationInvocationContext.class);
+        doReturn(operation).when(context).getOperation();
+        doReturn(new Object[]{city}).when(context).getArgs();
+        return context;
+    }
+
+    private String keyOwnedBy(String member, String... except) {
+        return IntStream.range(0, 1000).mapToObj(i -> "city" + i)
+                .filter(key -> routing.isLocal(key) == member.equals(SELF) && !List.of(except).contains(key))
+                .findFirst().orElseThrow();
+    }
+
+    private static WeatherResponseDTO weather(String city) {
+        return weather(city, Instant.parse("2024-03-15T12:00:00Z"));
+    }
+
+    private static WeatherResponseDTO weather(String city, Instant fetchedAt) {
+        return new WeatherResponseDTO(city, 20.0, "clear sky", 30, 1.0, fetchedAt, false);
+    }
+}
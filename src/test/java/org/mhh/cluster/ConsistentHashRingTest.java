@@ -0,0 +1,46 @@
+package org.mhh.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void ownerOf_SpreadsKeysEvenlyOverMembers() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("http://localhost:8081", "http://localhost:8082", "http://localhost:8083"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf("city-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 * 0.2, counts::toString));
+    }
+
+    @Test
+    void ownerOf_MovesOnlyKeysOfTheAddedMember() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("http://localhost:8081", "http://localhost:8082", "http://localhost:8083"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("http://localhost:8081", "http://localhost:8082", "http://localhost:8083",
+                "http://localhost:8084"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "city-" + i;
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                assertEquals("http://localhost:8084", owner, "a key only moves to the new member");
+                moved++;
+            }
+        }
+        // about a quarter of the keys belong to the fourth member
+        assertTrue(moved > KEYS * 0.2 && moved < KEYS * 0.3, "moved keys out of range");
+    }
+}
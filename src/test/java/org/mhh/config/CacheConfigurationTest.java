@@ -0,0 +1,144 @@
+package org.mhh.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mhh.cache.AdaptiveTtl;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.HotCityTracker;
+import org.mhh.cache.UnknownCityCache;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.service.WeatherService;
+import org.mhh.upstream.UpstreamPriority;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheConfigurationTest {
+
+    private final ExecutorService refreshExecutor =
+            Executors.newSingleThreadExecutor(new ServingThreads(false).threadFactory("weather-cache-refresh-"));
+
+    @AfterEach
+    void tearDown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Test
+    void refreshAhead_ServesStaleEntryAndReloadsInBackground() throws InterruptedException {
+        WeatherService weatherService = mock(WeatherService.class);
+        WeatherResponseDTO first = new WeatherResponseDTO("Tehran", 20.0, "clear sky", 30, 1.0, Instant.now(), false);
+        WeatherResponseDTO second = new WeatherResponseDTO("Tehran", 22.0, "clear sky", 28, 1.5, Instant.now(), false);
+        when(weatherService.fetchWeatherData("tehran", UpstreamPriority.INTERACTIVE)).thenReturn(first);
+        // the reload waits until the stale read has returned, or Caffeine could hand the new value to that read
+        CountDownLatch staleReadDone = new CountDownLatch(1);
+        AtomicReference<String> reloadThread = new AtomicReference<>();
+        when(weatherService.fetchWeatherData("tehran", UpstreamPriority.BACKGROUND)).thenAnswer(invocation -> {
+            reloadThread.set(Thread.currentThread().getName());
+            staleReadDone.await();
+            return second;
+        });
+        Cache cache = refreshAheadCache(weatherService, Duration.ofMillis(50), Duration.ofMinutes(5));
+
+        assertSame(first, cache.get("tehran").get());
+        Thread.sleep(100);
+
+        assertSame(first, cache.get("tehran").get(), "entry past the soft TTL is served without waiting");
+        staleReadDone.countDown();
+        verify(weatherService, timeout(2000)).fetchWeatherData("tehran", UpstreamPriority.BACKGROUND);
+        awaitValue(cache, second);
+        assertTrue(reloadThread.get().startsWith("weather-cache-refresh-"), "reloads stay off the common pool");
+    }
+
+    @Test
+    void refreshAhead_KeepsStaleEntryWhileUpstreamFails() throws InterruptedException {
+        WeatherService weatherService = mock(WeatherService.class);
+        WeatherResponseDTO cached = new WeatherResponseDTO("Tehran", 20.0, "clear sky", 30, 1.0, Instant.now(), false);
+        when(weatherService.fetchWeatherData("tehran", UpstreamPriority.INTERACTIVE)).thenReturn(cached);
+        when(weatherService.fetchWeatherData("tehran", UpstreamPriority.BACKGROUND))
+                .thenThrow(new ExternalApiException("Service unavailable"));
+        Cache cache = refreshAheadCache(weatherService, Duration.ofMillis(50), Duration.ofMinutes(5));
+
+        cache.get("tehran");
+        Thread.sleep(100);
+        cache.get("tehran");
+        verify(weatherService, timeout(2000)).fetchWeatherData("tehran", UpstreamPriority.BACKGROUND);
+
+        assertSame(cached, cache.get("tehran").get());
+    }
+
+    @Test
+    void weatherCache_ReportsRemainingTtlFromFetchTime() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        new CacheConfiguration()
+                .weatherCacheCustomizer(new DefaultListableBeanFactory().getBeanProvider(WeatherService.class),
+                        new DefaultListableBeanFactory().getBeanProvider(AdaptiveTtl.class), Runnable::run, 100,
+                        Duration.ofMinutes(10), false, Duration.ofMinutes(2), Duration.ofMinutes(30))
+                .customize(cacheManager);
+        WeatherCacheAccess weatherCache = new WeatherCacheAccess(cacheManager,
+                new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))));
+
+        weatherCache.put("Tehran", new WeatherResponseDTO("Tehran", 20.0, "clear sky", 30, 1.0,
+                Instant.now().minus(Duration.ofMinutes(4)), false));
+
+        Duration remaining = weatherCache.remainingTtl(" TEHRAN");
+        assertTrue(remaining.compareTo(Duration.ofMinutes(6)) <= 0 && remaining.compareTo(Duration.ofMinutes(5)) > 0, remaining::toString);
+        assertNull(weatherCache.remainingTtl("Paris"));
+    }
+
+    @Test
+    void weatherCache_UsesAdaptiveTtlPerKeyWhenEnabled() {
+        CityKeyGenerator cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+        AdaptiveTtl adaptiveTtl = new AdaptiveTtl(new HotCityTracker(cityKeys, new UnknownCityCache(new CaffeineCacheManager()), 100),
+                new SimpleMeterRegistry(),
+                Duration.ofMinutes(10), 100, Duration.ofMinutes(5), Duration.ofMinutes(30), 0.5, 5, 1.0, 10);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("adaptiveTtl", adaptiveTtl);
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        new CacheConfiguration()
+                .weatherCacheCustomizer(beanFactory.getBeanProvider(WeatherService.class), beanFactory.getBeanProvider(AdaptiveTtl.class), Runnable::run,
+                        100, Duration.ofMinutes(10), false, Duration.ofMinutes(2), Duration.ofMinutes(30))
+                .customize(cacheManager);
+        WeatherCacheAccess weatherCache = new WeatherCacheAccess(cacheManager, cityKeys);
+
+        WeatherResponseDTO weather = new WeatherResponseDTO("Tehran", 20.0, "clear sky", 30, 1.0, Instant.now(), false);
+        adaptiveTtl.onFetched("tehran", weather);
+        weatherCache.put("Tehran", weather);
+
+        // nobody requested Tehran, so it is kept up to max-ttl instead of weather.cache.ttl
+        assertTrue(weatherCache.remainingTtl("Tehran").compareTo(Duration.ofMinutes(29)) > 0);
+    }
+
+    private Cache refreshAheadCache(WeatherService weatherService, Duration softTtl, Duration hardTtl) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("weatherService", weatherService);
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        new CacheConfiguration()
+                .weatherCacheCustomizer(beanFactory.getBeanProvider(WeatherService.class), beanFactory.getBeanProvider(AdaptiveTtl.class), refreshExecutor,
+                        100, Duration.ofMinutes(10), true, softTtl, hardTtl)
+                .customize(cacheManager);
+        return cacheManager.getCache(CacheConfiguration.WEATHER_CACHE);
+    }
+
+    private void awaitValue(Cache cache, WeatherResponseDTO expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (cache.get("tehran").get() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertSame(expected, cache.get("tehran").get());
+    }
+}
@@ -0,0 +1,87 @@
+package org.mhh.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProConfigurationTest {
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private ExecutorService stubExecutor;
+    private HttpServer stubUpstream;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stubUpstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubExecutor = Executors.newCachedThreadPool();
+        stubUpstream.setExecutor(stubExecutor);
+        stubUpstream.createContext("/weather", exchange -> respond(exchange, Duration.ZERO));
+        stubUpstream.createContext("/slow", exchange -> respond(exchange, Duration.ofSeconds(3)));
+        stubUpstream.start();
+
+        ProConfiguration configuration = new ProConfiguration();
+        httpClient = configuration.upstreamHttpClient(10, 10, Duration.ofSeconds(1), Duration.ofMillis(300),
+                Duration.ofSeconds(1), Duration.ofSeconds(30), Duration.ofMinutes(5));
+        restTemplate = configuration.restTemplate(httpClient);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        stubUpstream.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Test
+    void restTemplate_ReusesPooledConnections() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals("{\"cod\":200}", restTemplate.getForObject(url("/weather"), String.class));
+        }
+        assertEquals(1, clientPorts.size(), "sequential requests should share one keep-alive connection");
+    }
+
+    @Test
+    void restTemplate_FailsFastOnSlowUpstream() {
+        long start = System.nanoTime();
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(url("/slow"), String.class));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000, "read timeout should bound the call");
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + stubUpstream.getAddress().getPort() + path;
+    }
+
+    private void respond(HttpExchange exchange, Duration delay) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "{\"cod\":200}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.mhh.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.mhh.dto.WeatherResponseDTO;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreEncodedWeatherHttpMessageConverterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final PreEncodedWeatherHttpMessageConverter converter =
+            new PreEncodedWeatherHttpMessageConverter(objectMapper, Jackson2ObjectMapperBuilder.json(), 100);
+    private final WeatherResponseDTO cached = new WeatherResponseDTO("London", 15.5, "broken clouds", 75, 4.1,
+            Instant.parse("2024-03-15T12:00:00Z"), false);
+
+    @Test
+    void write_EncodesEachCachedEntryOncePerFormat() throws Exception {
+        MockHttpOutputMessage json = new MockHttpOutputMessage();
+        converter.write(cached, MediaType.APPLICATION_JSON, json);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(cached), json.getBodyAsBytes());
+        assertEquals(MediaType.APPLICATION_JSON, json.getHeaders().getContentType());
+        assertEquals(json.getBodyAsBytes().length, json.getHeaders().getContentLength());
+        assertSame(converter.encode(cached, MediaType.APPLICATION_JSON), converter.encode(cached, MediaType.APPLICATION_JSON));
+
+        WeatherResponseDTO refreshed = new WeatherResponseDTO("London", 16.0, "broken clouds", 75, 4.1,
+                Instant.parse("2024-03-15T12:05:00Z"), false);
+        assertNotSame(converter.encode(cached, MediaType.APPLICATION_JSON), converter.encode(refreshed, MediaType.APPLICATION_JSON),
+                "a refreshed entry is a new instance and is encoded again");
+    }
+
+    @Test
+    void write_EncodesCborThatDecodesToTheSameResponse() throws Exception {
+        MockHttpOutputMessage cbor = new MockHttpOutputMessage();
+        converter.write(cached, MediaType.APPLICATION_CBOR, cbor);
+
+        assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        assertEquals(cached, cborMapper.readValue(cbor.getBodyAsBytes(), WeatherResponseDTO.class));
+        assertNotEquals(cbor.getBodyAsBytes().length, converter.encode(cached, MediaType.APPLICATION_JSON).length);
+    }
+
+    @Test
+    void canRead_IsWriteOnly() {
+        assertFalse(converter.canRead(WeatherResponseDTO.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canWrite(WeatherResponseDTO.class, PreEncodedWeatherHttpMessageConverter.APPLICATION_SMILE));
+        assertFalse(converter.canWrite(String.class, MediaType.APPLICATION_JSON));
+    }
+}
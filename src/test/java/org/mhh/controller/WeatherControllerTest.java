@@ -1,24 +1,52 @@
 package org.mhh.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.HotCityTracker;
+import org.mhh.cache.UnknownCityCache;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.ErrorResponseDTO;
+import org.mhh.dto.GeoCellDTO;
+import org.mhh.dto.WeatherHistoryDTO;
 import org.mhh.dto.WeatherResponseDTO;
 import org.mhh.exception.CityNotFoundException;
 import org.mhh.exception.ExternalApiException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.geo.GeoGrid;
+import org.mhh.history.ObservationHistory;
+import org.mhh.service.WeatherBatchService;
 import org.mhh.service.WeatherService;
+import org.mhh.service.WeatherSubscriptionService;
 import org.springframework.beans.factory.annotation.Autowired;import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest; // ۱. فقط لایه وب رو تست می‌کنه
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @WebMvcTest(controllers = WeatherController.class)
+@Import({WeatherFreshness.class, HotCityTracker.class, UnknownCityCache.class, CityKeyGenerator.class, CityGazetteer.class, GeoGrid.class,
+        ObservationHistory.class, SimpleMeterRegistry.class})
 class WeatherControllerTest {
 
     @Autowired
@@ -27,9 +55,29 @@ class WeatherControllerTest {
     @MockBean
     private WeatherService weatherService;
 
+    @MockBean
+    private WeatherBatchService weatherBatchService;
+
+    @MockBean
+    private WeatherSubscriptionService weatherSubscriptionService;
+
+    @MockBean
+    private WeatherCacheAccess weatherCache;
+
+    @MockBean
+    private ClusterRouting clusterRouting;
+
+    @Autowired
+    private ObservationHistory observationHistory;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        given(clusterRouting.isLocal(anyString())).willReturn(true);
+    }
+
     void getWeatherForecast_Success() throws Exception {
 
         String city = "London";
@@ -79,6 +127,21 @@ class WeatherControllerTest {
         then(weatherService).should(never()).getWeatherData(anyString());
     }
 
+    @Test
+    void getWeatherForecast_RejectsCellKeyAsCityName() throws Exception {
+        mockMvc.perform(get("/api/weather")
+                        .param("city", " GEO:tnke1ab")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is(400)));
+        mockMvc.perform(get("/api/weather/batch")
+                        .param("cities", "Tehran", "geo:t")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        then(weatherService).should(never()).getWeatherData(anyString());
+    }
+
     @Test
     void getWeatherForecast_ExternalApiError() throws Exception {
         String city = "ProblemCity";
@@ -96,4 +159,148 @@ class WeatherControllerTest {
         then(weatherService).should(times(1)).getWeatherData(city);
     }
 
+    @Test
+    void getWeatherForecasts_Batch_ReportsPerCityResults() throws Exception {
+        WeatherResponseDTO london = new WeatherResponseDTO("London", 15.0, "clear sky", 80, 5.0);
+        ErrorResponseDTO notFound = new ErrorResponseDTO(LocalDateTime.now(), 404, "Not Found",
+                "Weather data not found for city: Atlantis", "uri=/api/weather?city=Atlantis");
+        given(weatherBatchService.getWeatherData(List.of("London", "Atlantis"))).willReturn(List.of(
+                new CityWeatherResultDTO("London", 200, london, null),
+                new CityWeatherResultDTO("Atlantis", 404, null, notFound)));
+
+        mockMvc.perform(get("/api/weather/batch")
+                        .param("cities", "London,Atlantis")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].city", is("London")))
+                .andExpect(jsonPath("$[0].weather.cityName", is("London")))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].status", is(404)))
+                .andExpect(jsonPath("$[1].error.message", containsString("Atlantis")));
+    }
+
+    @Test
+    void getCitySuggestions_MatchesNamesAndAliasesByPrefix() throws Exception {
+        mockMvc.perform(get("/api/weather/cities")
+                        .param("prefix", " TEH")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Tehran")))
+                .andExpect(jsonPath("$[0].country", is("IR")))
+                .andExpect(jsonPath("$[0].id", is(1)));
+
+        mockMvc.perform(get("/api/weather/cities")
+                        .param("prefix", "sa")
+                        .param("limit", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)));
+
+        mockMvc.perform(get("/api/weather/cities")
+                        .param("prefix", " ")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getWeatherForecast_SendsCacheHeadersAndAnswersConditionalGetWith304() throws Exception {
+        WeatherResponseDTO cached = new WeatherResponseDTO("London", 15.0, "clear sky", 80, 5.0,
+                Instant.parse("2024-03-15T12:00:00Z"), false);
+        given(weatherService.getWeatherData("London")).willReturn(cached);
+        given(weatherCache.remainingTtl("London")).willReturn(Duration.ofSeconds(421));
+
+        String etag = mockMvc.perform(get("/api/weather").param("city", "London"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=421, public"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/weather").param("city", "London").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=421, public"))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/api/weather").param("city", "London").header(HttpHeaders.IF_NONE_MATCH, "W/\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("London")));
+    }
+
+    @Test
+    void getWeatherForecast_NegotiatesCbor() throws Exception {
+        WeatherResponseDTO cached = new WeatherResponseDTO("London", 15.0, "clear sky", 80, 5.0,
+                Instant.parse("2024-03-15T12:00:00Z"), false);
+        given(weatherService.getWeatherData("London")).willReturn(cached);
+
+        byte[] body = mockMvc.perform(get("/api/weather").param("city", "London").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(cached, new ObjectMapper(new CBORFactory()).findAndRegisterModules().readValue(body, WeatherResponseDTO.class));
+    }
+
+    @Test
+    void getWeatherForecast_ByCoordinates_SnapsToGridCell() throws Exception {
+        WeatherResponseDTO cached = new WeatherResponseDTO("Tehran", 21.0, "clear sky", 20, 2.0,
+                Instant.parse("2024-03-15T12:00:00Z"), false, new GeoCellDTO("tnke1", 35.70556640625, 51.39404296875));
+        given(weatherService.getWeatherData("geo:tnke1")).willReturn(cached);
+
+        mockMvc.perform(get("/api/weather").param("lat", "35.6892").param("lon", "51.3890"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("Tehran")))
+                .andExpect(jsonPath("$.cell.geohash", is("tnke1")))
+                .andExpect(jsonPath("$.cell.latitude", is(35.70556640625)));
+        mockMvc.perform(get("/api/weather").param("lat", "35.7001").param("lon", "51.4012"))
+                .andExpect(status().isOk());
+        then(weatherService).should(times(2)).getWeatherData("geo:tnke1");
+
+        mockMvc.perform(get("/api/weather").param("lat", "95").param("lon", "51.3890"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("Latitude")));
+        mockMvc.perform(get("/api/weather").param("lat", "north").param("lon", "51.3890"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getWeatherHistory_AggregatesRecordedObservations() throws Exception {
+        Instant now = Instant.now();
+        observationHistory.onFetched("oslo", new WeatherResponseDTO("Oslo", 4.0, "mist", 90, 3.0,
+                now.minus(Duration.ofHours(2)), false));
+        observationHistory.onFetched("oslo", new WeatherResponseDTO("Oslo", 8.0, "clear sky", 70, 5.0,
+                now.minus(Duration.ofHours(1)), false));
+        given(weatherService.getWeatherData(anyString())).willThrow(new AssertionError("history must not call upstream"));
+
+        mockMvc.perform(get("/api/weather/history").param("city", "oslo").param("samples", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("Oslo")))
+                .andExpect(jsonPath("$.count", is(2)))
+                .andExpect(jsonPath("$.temperature.min", is(4.0)))
+                .andExpect(jsonPath("$.temperature.max", is(8.0)))
+                .andExpect(jsonPath("$.humidity.avg", is(80.0)))
+                .andExpect(jsonPath("$.samples", hasSize(2)));
+        mockMvc.perform(get("/api/weather/history").param("city", "Oslo")
+                        .param("from", now.minus(Duration.ofMinutes(90)).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(1)))
+                .andExpect(jsonPath("$.windSpeed.avg", is(5.0)))
+                .andExpect(jsonPath("$.samples").doesNotExist());
+        mockMvc.perform(get("/api/weather/history").param("city", "Oslo").param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getWeatherHistory_ForwardsCitiesOwnedElsewhere() throws Exception {
+        given(clusterRouting.isLocal("Bergen")).willReturn(false);
+        given(clusterRouting.historyFromOwner("Bergen", null, null, false))
+                .willReturn(new WeatherHistoryDTO("Bergen", null, null, 3, null, null, null, null));
+
+        mockMvc.perform(get("/api/weather/history").param("city", "Bergen"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cityName", is("Bergen")))
+                .andExpect(jsonPath("$.count", is(3)));
+    }
 }
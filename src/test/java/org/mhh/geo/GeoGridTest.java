@@ -0,0 +1,58 @@
+package org.mhh.geo;
+
+import org.junit.jupiter.api.Test;
+import org.mhh.dto.GeoCellDTO;
+import org.mhh.exception.InvalidInputException;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoGridTest {
+
+    @Test
+    void encode_MatchesReferenceGeohashes() {
+        assertEquals("u4pruydqqvj", GeoGrid.encode(57.64911, 10.40744, 11));
+        assertEquals("tnke1", GeoGrid.encode(35.6892, 51.3890, 5));
+        assertEquals("s0000", GeoGrid.encode(0, 0, 5));
+    }
+
+    @Test
+    void decode_ReturnsCellCenterThatEncodesToTheSameCell() {
+        GeoCellDTO cell = GeoGrid.decode("u4pru");
+
+        assertEquals("u4pru", cell.getGeohash());
+        assertEquals(57.63, cell.getLatitude(), 0.03);
+        assertEquals(10.39, cell.getLongitude(), 0.03);
+        assertEquals("u4pru", GeoGrid.encode(cell.getLatitude(), cell.getLongitude(), 5));
+        assertThrows(InvalidInputException.class, () -> GeoGrid.decode("u4pra"));
+    }
+
+    @Test
+    void cellKey_SnapsNearbyPositionsOntoFewCells() {
+        GeoGrid grid = new GeoGrid(5);
+        Random random = new Random(42);
+        Set<String> cells = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            // positions within ~1 km of central Tehran
+            cells.add(grid.cellKey(35.6892 + (random.nextDouble() - 0.5) * 0.018, 51.3890 + (random.nextDouble() - 0.5) * 0.022));
+        }
+
+        assertTrue(cells.size() <= 4, cells::toString);
+        assertTrue(cells.stream().allMatch(key -> key.startsWith(GeoGrid.CELL_KEY_PREFIX)));
+        assertEquals(cells.iterator().next().substring(4), GeoGrid.parseCellKey(cells.iterator().next()).getGeohash());
+        assertNull(GeoGrid.parseCellKey("tehran"));
+    }
+
+    @Test
+    void cellKey_RejectsPositionsOffTheGlobe() {
+        GeoGrid grid = new GeoGrid(5);
+
+        assertThrows(InvalidInputException.class, () -> grid.cellKey(91, 0));
+        assertThrows(InvalidInputException.class, () -> grid.cellKey(0, -180.5));
+        assertThrows(InvalidInputException.class, () -> grid.cellKey(Double.NaN, 0));
+        assertThrows(IllegalArgumentException.class, () -> new GeoGrid(13));
+    }
+}
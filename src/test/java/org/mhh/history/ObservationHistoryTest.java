@@ -0,0 +1,90 @@
+package org.mhh.history;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.dto.WeatherHistoryDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObservationHistoryTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-15T12:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationHistory history = new ObservationHistory(
+            new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))), meterRegistry,
+            10, 4, Duration.ofDays(1), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void query_KeepsLatestSamplesInOrderAndAggregatesWindow() {
+        for (int hour = 6; hour >= 1; hour--) {
+            history.onFetched("tehran", weather(10.0 + (6 - hour), 50, 1.25, NOW.minus(Duration.ofHours(hour))));
+        }
+        // the same fetch recorded twice, e.g. by a refresh racing a miss, is kept once
+        history.onFetched("tehran", weather(15.0, 50, 1.25, NOW.minus(Duration.ofHours(1))));
+
+        WeatherHistoryDTO all = history.query(" TEHRAN", NOW.minus(Duration.ofHours(12)), null, true);
+
+        // capacity 4: only the last four hours are left
+        assertEquals(4, all.getCount());
+        assertEquals(NOW.minus(Duration.ofHours(4)), all.getSamples().get(0).getObservedAt());
+        assertEquals(12.0, all.getTemperature().getMin());
+        assertEquals(15.0, all.getTemperature().getMax());
+        assertEquals(13.5, all.getTemperature().getAvg());
+        assertEquals(1.25, all.getWindSpeed().getAvg());
+        assertEquals(4.0, meterRegistry.get("weather.history.samples").gauge().value());
+
+        WeatherHistoryDTO window = history.query("Tehran", NOW.minus(Duration.ofHours(3)), NOW.minus(Duration.ofHours(2)), false);
+        assertEquals(2, window.getCount());
+        assertEquals(13.5, window.getTemperature().getAvg());
+        assertNull(window.getSamples());
+    }
+
+    @Test
+    void query_IgnoresSamplesOlderThanRetention() {
+        history.onFetched("oslo", weather(-3.0, 90, 7.0, NOW.minus(Duration.ofDays(2))));
+        history.onFetched("oslo", weather(1.0, 80, 4.0, NOW.minus(Duration.ofMinutes(30))));
+
+        WeatherHistoryDTO week = history.query("Oslo", NOW.minus(Duration.ofDays(7)), NOW, false);
+
+        assertEquals(1, week.getCount());
+        assertEquals(NOW.minus(Duration.ofDays(7)), week.getFrom());
+        assertEquals(0, history.query("Paris", null, null, false).getCount());
+        assertThrows(InvalidInputException.class, () -> history.query("Oslo", NOW, NOW.minusSeconds(1), false));
+        assertThrows(InvalidInputException.class, () -> history.query(" ", null, null, false));
+    }
+
+    @Test
+    void query_ReturnsReadingsAsReportedAndHandlesTimesPast2038() {
+        Instant past2038 = Instant.parse("2040-06-01T00:00:00Z");
+        ObservationHistory future = new ObservationHistory(
+                new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))), meterRegistry,
+                10, 4, Duration.ofDays(1), Clock.fixed(past2038, ZoneOffset.UTC));
+        future.onFetched("tehran", weather(12.3, 40, 3.1, past2038.minus(Duration.ofHours(2))));
+        future.onFetched("tehran", weather(-0.7, 45, 3.3, past2038.minus(Duration.ofHours(1))));
+
+        WeatherHistoryDTO history = future.query("Tehran", null, null, true);
+
+        assertEquals(2, history.getCount());
+        assertEquals(past2038.minus(Duration.ofHours(2)), history.getSamples().get(0).getObservedAt());
+        assertEquals(12.3, history.getSamples().get(0).getTemperature());
+        assertEquals(-0.7, history.getTemperature().getMin());
+        assertEquals(12.3, history.getTemperature().getMax());
+        assertEquals(5.8, history.getTemperature().getAvg());
+        assertEquals(3.1, history.getWindSpeed().getMin());
+    }
+
+    private static WeatherResponseDTO weather(double temperature, int humidity, double windSpeed, Instant fetchedAt) {
+        return new WeatherResponseDTO("Tehran", temperature, "clear sky", humidity, windSpeed, fetchedAt, false);
+    }
+}
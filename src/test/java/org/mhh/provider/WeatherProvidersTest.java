@@ -0,0 +1,189 @@
+package org.mhh.provider;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.ExternalApiException;
+import org.mhh.upstream.UpstreamBulkhead;
+import org.mhh.upstream.UpstreamCircuitBreaker;
+import org.mhh.upstream.UpstreamGuard;
+import org.mhh.upstream.UpstreamRateLimiter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherProvidersTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WeatherProviders weatherProviders;
+
+    @AfterEach
+    void tearDown() {
+        weatherProviders.close();
+    }
+
+    @Test
+    void fetch_HedgesSlowPrimaryAndTakesFirstAnswer() {
+        StubProvider primary = new StubProvider("primary", () -> {
+            sleep(1000);
+            return weather("primary");
+        });
+        StubProvider secondary = new StubProvider("secondary", () -> weather("secondary"));
+        weatherProviders = weatherProviders(100, primary, secondary);
+
+        long start = System.nanoTime();
+        WeatherResponseDTO result = weatherProviders.fetchByCity("Tehran");
+
+        assertEquals("secondary", result.getCityName());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(800)) < 0, "must not wait for the slow primary");
+        assertEquals(1.0, meterRegistry.get("weather.upstream.hedges").tag("provider", "secondary").counter().count());
+        assertEquals(1.0, meterRegistry.get("weather.upstream.hedge.wins").tag("provider", "secondary").counter().count());
+    }
+
+    @Test
+    void fetch_LosingAttemptKeepsBulkheadPermitUntilItFinishes() throws InterruptedException {
+        StubProvider primary = new StubProvider("primary", () -> {
+            sleep(500);
+            return weather("primary");
+        });
+        StubProvider secondary = new StubProvider("secondary", () -> weather("secondary"));
+        weatherProviders = weatherProviders(50, primary, secondary);
+
+        assertEquals("secondary", weatherProviders.fetchByCity("Tehran").getCityName());
+
+        assertEquals(9.0, bulkheadAvailable(), "the slow primary is still running");
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (bulkheadAvailable() < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10.0, bulkheadAvailable());
+    }
+
+    @Test
+    void fetch_DoesNotHedgeSingleProviderByDefault() {
+        StubProvider only = new StubProvider("only", () -> {
+            sleep(200);
+            return weather("only");
+        });
+        weatherProviders = weatherProviders(20, only);
+
+        assertEquals("only", weatherProviders.fetchByCity("Tehran").getCityName());
+        assertEquals(1, only.calls.get());
+        assertEquals(0.0, meterRegistry.get("weather.upstream.hedges").tag("provider", "only").counter().count());
+    }
+
+    @Test
+    void fetch_FailsOverAndDemotesProviderThatKeepsFailing() {
+        StubProvider primary = new StubProvider("primary", () -> {
+            throw new ExternalApiException("Could not communicate with the external weather service.");
+        });
+        StubProvider secondary = new StubProvider("secondary", () -> weather("secondary"));
+        weatherProviders = weatherProviders(100, primary, secondary);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("secondary", weatherProviders.fetchByCity("Tehran").getCityName());
+        }
+        assertEquals(3, primary.calls.get());
+        assertEquals(3.0, meterRegistry.get("weather.upstream.failovers").tag("provider", "primary").counter().count());
+        assertEquals(1.0, meterRegistry.get("weather.upstream.provider.demoted").tag("provider", "primary").gauge().value());
+
+        // demoted: the secondary is asked first and the primary is left alone
+        assertEquals("secondary", weatherProviders.fetchByCity("Tehran").getCityName());
+        assertEquals(3, primary.calls.get());
+    }
+
+    @Test
+    void fetch_DoesNotFailOverWhenCityIsUnknown() {
+        StubProvider primary = new StubProvider("primary", () -> {
+            throw new CityNotFoundException("Atlantis");
+        });
+        StubProvider secondary = new StubProvider("secondary", () -> weather("secondary"));
+        weatherProviders = weatherProviders(100, primary, secondary);
+
+        assertThrows(CityNotFoundException.class, () -> weatherProviders.fetchByCity("Atlantis"));
+        assertEquals(0, secondary.calls.get());
+        assertEquals(0.0, meterRegistry.get("weather.upstream.provider.demoted").tag("provider", "primary").gauge().value());
+    }
+
+    @Test
+    void fetch_SkipsExtraCallsWithoutSpareQuota() {
+        StubProvider primary = new StubProvider("primary", () -> {
+            throw new ExternalApiException("Could not communicate with the external weather service.");
+        });
+        StubProvider secondary = new StubProvider("secondary", () -> weather("secondary"));
+        UpstreamGuard exhausted = upstreamGuard(new UpstreamRateLimiter(meterRegistry, 1, 0, 10, Duration.ZERO, Duration.ZERO));
+        weatherProviders = new WeatherProviders(List.of(primary, secondary), exhausted, meterRegistry, new ServingThreads(false),
+                true, false, 95, Duration.ofMillis(100), Duration.ofMillis(10), 3, Duration.ofSeconds(30));
+
+        assertThrows(ExternalApiException.class, () -> weatherProviders.fetchByCity("Tehran"));
+        assertEquals(0, secondary.calls.get());
+    }
+
+    private WeatherProviders weatherProviders(long hedgeDelayMillis, WeatherProvider... providers) {
+        UpstreamGuard upstreamGuard = upstreamGuard(
+                new UpstreamRateLimiter(meterRegistry, 6000, 100, 10, Duration.ofSeconds(1), Duration.ofSeconds(1)));
+        return new WeatherProviders(List.of(providers), upstreamGuard, meterRegistry, new ServingThreads(false), true, false, 95,
+                Duration.ofMillis(hedgeDelayMillis), Duration.ofMillis(10), 3, Duration.ofSeconds(30));
+    }
+
+    private double bulkheadAvailable() {
+        return meterRegistry.get("weather.upstream.bulkhead.available").gauge().value();
+    }
+
+    private UpstreamGuard upstreamGuard(UpstreamRateLimiter rateLimiter) {
+        return new UpstreamGuard(
+                new UpstreamCircuitBreaker(meterRegistry, 20, 10, 50, Duration.ofSeconds(2), 80, Duration.ofMinutes(1), 1),
+                rateLimiter,
+                new UpstreamBulkhead(meterRegistry, 10, Duration.ofMillis(100)));
+    }
+
+    private static WeatherResponseDTO weather(String source) {
+        return new WeatherResponseDTO(source, 20.0, "clear sky", 20, 2.0, Instant.now(), false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalApiException("Interrupted.");
+        }
+    }
+
+    private static class StubProvider implements WeatherProvider {
+
+        private final String name;
+        private final Supplier<WeatherResponseDTO> answer;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private StubProvider(String name, Supplier<WeatherResponseDTO> answer) {
+            this.name = name;
+            this.answer = answer;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public WeatherResponseDTO fetchByCity(String city) {
+            calls.incrementAndGet();
+            return answer.get();
+        }
+
+        @Override
+        public WeatherResponseDTO fetchByCoordinates(double latitude, double longitude) {
+            calls.incrementAndGet();
+            return answer.get();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.mhh.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.WeatherCacheAccess;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.dto.CityWeatherResultDTO;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.CityNotFoundException;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherBatchServiceImplTest {
+
+    @Mock
+    private WeatherService weatherService;
+
+    @Mock
+    private WeatherCacheAccess weatherCache;
+
+    private ExecutorService executor;
+
+    private WeatherBatchServiceImpl batchService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        batchService = new WeatherBatchServiceImpl(weatherService, weatherCache,
+                new WeatherFreshness(false, Duration.ofMinutes(2)),
+                new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))), executor);
+        ReflectionTestUtils.setField(batchService, "maxCities", 10);
+        ReflectionTestUtils.setField(batchService, "timeout", Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void getWeatherData_FetchesMissesInParallel() {
+        when(weatherService.getWeatherData(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new WeatherResponseDTO(invocation.getArgument(0), 10.0, "clear sky", 50, 1.0);
+        });
+
+        long start = System.nanoTime();
+        List<CityWeatherResultDTO> results = batchService.getWeatherData(List.of("London", "Paris", "Tehran", "Berlin"));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertEquals(List.of("London", "Paris", "Tehran", "Berlin"), results.stream().map(CityWeatherResultDTO::getCity).toList());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == 200));
+        assertTrue(elapsed.toMillis() < 1000, "misses should be fetched concurrently, took " + elapsed);
+    }
+
+    @Test
+    void getWeatherData_AnswersCacheHitsInline() {
+        WeatherResponseDTO cached = new WeatherResponseDTO("London", 15.0, "clear sky", 80, 5.0);
+        when(weatherCache.peek("London")).thenReturn(cached);
+
+        List<CityWeatherResultDTO> results = batchService.getWeatherData(List.of("London", "london "));
+
+        assertEquals(1, results.size());
+        assertSame(cached, results.get(0).getWeather());
+        verify(weatherService, never()).getWeatherData(anyString());
+    }
+
+    @Test
+    void getWeatherData_CityNotFoundDoesNotFailBatch() {
+        when(weatherService.getWeatherData("London")).thenReturn(new WeatherResponseDTO("London", 15.0, "clear sky", 80, 5.0));
+        when(weatherService.getWeatherData("Atlantis")).thenThrow(new CityNotFoundException("Atlantis"));
+
+        List<CityWeatherResultDTO> results = batchService.getWeatherData(List.of("London", "Atlantis"));
+
+        assertEquals(200, results.get(0).getStatus());
+        assertEquals(404, results.get(1).getStatus());
+        assertNull(results.get(1).getWeather());
+        assertTrue(results.get(1).getError().getMessage().contains("Atlantis"));
+    }
+
+    @Test
+    void getWeatherData_TooManyCities() {
+        List<String> cities = List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k");
+
+        assertThrows(InvalidInputException.class, () -> batchService.getWeatherData(cities));
+        verify(weatherService, never()).getWeatherData(anyString());
+    }
+}
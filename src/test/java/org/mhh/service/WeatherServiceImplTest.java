@@ -1,51 +1,101 @@
 package org.mhh.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.UnknownCityCache;
+import org.mhh.cluster.ClusterCacheResolver;
+import org.mhh.cluster.ClusterRouting;
+import org.mhh.config.CacheConfiguration;
+import org.mhh.config.ServingThreads;
 import org.mhh.dto.WeatherResponseDTO;
 import org.mhh.exception.CityNotFoundException;
 import org.mhh.exception.ExternalApiException;
 import org.mhh.exception.InvalidInputException;
+import org.mhh.exception.UpstreamUnavailableException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.mhh.provider.OpenWeatherMapProvider;
+import org.mhh.provider.WeatherProviders;
+import org.mhh.upstream.UpstreamBulkhead;
+import org.mhh.upstream.UpstreamCircuitBreaker;
+import org.mhh.upstream.UpstreamGuard;
+import org.mhh.upstream.UpstreamPriority;
+import org.mhh.upstream.UpstreamRateLimiter;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestClientException;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.RestTemplate;
 
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.*;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.queryParam;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
 
-@ExtendWith(MockitoExtension.class)
 class WeatherServiceImplTest {
 
-    @Mock
-    private RestTemplate restTemplate;
+    private MockRestServiceServer upstream;
 
     private ObjectMapper objectMapper = new ObjectMapper();
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private WeatherServiceImpl weatherService;
 
+    private CityKeyGenerator cityKeys;
+
+    private ClusterRouting clusterRouting;
+
     @BeforeEach
     void setUp() {
-        weatherService = new WeatherServiceImpl(restTemplate);
-        // TODO: Set private fields apiKey, apiUrl, apiUnits if needed for complex tests
-        org.springframework.test.util.ReflectionTestUtils.setField(weatherService, "apiKey", "test-key");
-        org.springframework.test.util.ReflectionTestUtils.setField(weatherService, "apiUrl", "http://test.com");
-        org.springframework.test.util.ReflectionTestUtils.setField(weatherService, "apiUnits", "metric");
-        org.springframework.test.util.ReflectionTestUtils.setField(weatherService, "objectMapper", objectMapper);
-
+        RestTemplate restTemplate = new RestTemplate();
+        upstream = MockRestServiceServer.bindTo(restTemplate).build();
+        UpstreamGuard upstreamGuard = new UpstreamGuard(
+                new UpstreamCircuitBreaker(meterRegistry, 4, 4, 50, Duration.ofSeconds(2), 80, Duration.ofMinutes(1), 1),
+                new UpstreamRateLimiter(meterRegistry, 6000, 100, 50, Duration.ofSeconds(2), Duration.ofSeconds(30)),
+                new UpstreamBulkhead(meterRegistry, 10, Duration.ofMillis(100)));
+        OpenWeatherMapProvider provider = new OpenWeatherMapProvider("primary", restTemplate, objectMapper, meterRegistry,
+                "http://test.com", "test-key", "metric");
+        WeatherProviders weatherProviders = new WeatherProviders(List.of(provider), upstreamGuard, meterRegistry, new ServingThreads(false),
+                false, false, 95, Duration.ofSeconds(1), Duration.ofMillis(50), 3, Duration.ofSeconds(30));
+        cityKeys = new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv")));
+        clusterRouting = new ClusterRouting(null, cityKeys, null, meterRegistry, new ServingThreads(false), false, "", "", "", "",
+                128, 100, Duration.ofSeconds(30), Duration.ofMinutes(10));
+        weatherService = new WeatherServiceImpl(weatherProviders,
+                new UnknownCityCache(new ConcurrentMapCacheManager(CacheConfiguration.UNKNOWN_CITY_CACHE)),
+                cityKeys, upstreamGuard, List.of(), clusterRouting);
     }
 
     @Test
-    void getWeatherData_Success() throws JsonProcessingException {
+    void getWeatherData_Success() {
         String city = "London";
         String fakeJsonResponse = """
                 {                    "coord": {"lon": -0.1257, "lat": 51.5085},
@@ -63,8 +113,10 @@ class WeatherServiceImplTest {
                 }
                 """;
 
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn(fakeJsonResponse);
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(queryParam("q", city))
+                .andRespond(withSuccess(fakeJsonResponse, MediaType.APPLICATION_JSON));
         WeatherResponseDTO result = weatherService.getWeatherData(city);
         assertNotNull(result);
         assertEquals("London", result.getCityName());
@@ -73,21 +125,56 @@ class WeatherServiceImplTest {
         assertEquals(75, result.getHumidity());
         assertEquals(4.1, result.getWindSpeed());
 
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+        upstream.verify();
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("outcome", "success").timer().count());
+        assertEquals(0, meterRegistry.get("weather.upstream.inflight").gauge().value());
+    }
+
+    @Test
+    void getWeatherData_CellKey_AsksUpstreamForCellCenter() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andExpect(queryParam("lat", "35.70556640625"))
+                .andExpect(queryParam("lon", "51.39404296875"))
+                .andRespond(withSuccess("""
+                        {"weather": [{"description": "clear sky"}], "main": {"temp": 21.0, "humidity": 20},
+                         "wind": {"speed": 2.0}, "name": "Tehran", "cod": 200}
+                        """, MediaType.APPLICATION_JSON));
+
+        WeatherResponseDTO result = weatherService.getWeatherData("geo:tnke1");
+
+        assertEquals("Tehran", result.getCityName());
+        assertEquals("tnke1", result.getCell().getGeohash());
+        assertEquals(35.70556640625, result.getCell().getLatitude());
+        upstream.verify();
+        assertThrows(InvalidInputException.class, () -> weatherService.getWeatherData("geo:tnkea"));
     }
 
     @Test
     void getWeatherData_CityNotFound_Api404() {
         String city = "InvalidCity";
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND, "Not Found"));
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND).body("Not Found"));
 
         CityNotFoundException exception = assertThrows(CityNotFoundException.class, () -> {
             weatherService.getWeatherData(city);
         });
 
         assertTrue(exception.getMessage().contains(city));
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_CityNotFound_AnsweredFromNegativeCache() {
+        String city = "asdfgh";
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND).body("Not Found"));
+
+        assertThrows(CityNotFoundException.class, () -> weatherService.getWeatherData(city));
+        CityNotFoundException repeated = assertThrows(CityNotFoundException.class, () -> weatherService.getWeatherData(" ASDFGH".trim()));
+
+        assertTrue(repeated.getMessage().contains("ASDFGH"));
+        assertEquals(0, repeated.getStackTrace().length);
+        upstream.verify();
     }
 
     @Test
@@ -96,41 +183,65 @@ class WeatherServiceImplTest {
         String fakeJsonResponse = """
                 {"cod": "404", "message": "city not found"}
                 """;
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenReturn(fakeJsonResponse);
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withSuccess(fakeJsonResponse, MediaType.APPLICATION_JSON));
 
         assertThrows(CityNotFoundException.class, () -> {
             weatherService.getWeatherData(city);
         });
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_ErrorCodeInBody_TaggedAsServerError() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withSuccess("{\"cod\": \"500\", \"message\": \"internal error\"}", MediaType.APPLICATION_JSON));
+
+        assertThrows(ExternalApiException.class, () -> weatherService.getWeatherData("Tehran"));
+
+        upstream.verify();
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("outcome", "server_error").timer().count());
+    }
+
+    @Test
+    void getWeatherData_BodyWithoutCode_TaggedAsParseError() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withSuccess("{\"name\": \"Tehran\"}", MediaType.APPLICATION_JSON));
+
+        ExternalApiException exception = assertThrows(ExternalApiException.class, () -> weatherService.getWeatherData("Tehran"));
+
+        assertTrue(exception.getMessage().contains("Failed to parse"));
+        upstream.verify();
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("outcome", "parse_error").timer().count());
     }
 
     @Test
     void getWeatherData_Unauthorized_Api401() {
         String city = "Tehran";
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "Invalid API key"));
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED).body("Invalid API key"));
 
         ExternalApiException exception = assertThrows(ExternalApiException.class, () -> {
             weatherService.getWeatherData(city);
         });
 
         assertFalse(exception.getMessage().contains("Invalid API key"));
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+        upstream.verify();
     }
 
     @Test
     void getWeatherData_NetworkError() {
         String city = "Paris";
-        when(restTemplate.getForObject(anyString(), eq(String.class)))
-                .thenThrow(new RestClientException("Could not connect"));
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withException(new IOException("Could not connect")));
 
         ExternalApiException exception = assertThrows(ExternalApiException.class, () -> {
             weatherService.getWeatherData(city);
         });
 
         assertTrue(exception.getMessage().contains("Could not communicate"));
-        verify(restTemplate, times(1)).getForObject(anyString(), eq(String.class));
+        upstream.verify();
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("outcome", "network_error").timer().count());
     }
 
     @Test
@@ -143,7 +254,7 @@ class WeatherServiceImplTest {
 
         assertTrue(exception.getMessage().contains("cannot be empty"));
 
-        verify(restTemplate, never()).getForObject(anyString(), any());
+        upstream.verify();
     }
 
     @Test
@@ -153,7 +264,302 @@ class WeatherServiceImplTest {
         assertThrows(InvalidInputException.class, () -> {
             weatherService.getWeatherData(city);
         });
-        verify(restTemplate, never()).getForObject(anyString(), any());
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_ConcurrentMisses_ShareSingleUpstreamCall() throws Exception {
+        int callers = 16;
+        CountDownLatch release = new CountDownLatch(1);
+        upstream.expect(requestTo(startsWith("http://test.com"))).andRespond(request -> {
+            awaitQuietly(release);
+            return withSuccess("""
+                    {"weather": [{"description": "clear sky"}], "main": {"temp": 21.0, "humidity": 40},
+                     "wind": {"speed": 2.5}, "name": "Tehran", "cod": 200}
+                    """, MediaType.APPLICATION_JSON).createResponse(request);
+        });
+
+        List<Future<WeatherResponseDTO>> results = callConcurrently(callers, "Tehran", release);
+
+        WeatherResponseDTO first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<WeatherResponseDTO> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_ConcurrentMisses_ShareUpstreamFailure() throws Exception {
+        int callers = 16;
+        CountDownLatch release = new CountDownLatch(1);
+        upstream.expect(requestTo(startsWith("http://test.com"))).andRespond(request -> {
+            awaitQuietly(release);
+            return withStatus(HttpStatus.NOT_FOUND).createResponse(request);
+        });
+
+        List<Future<WeatherResponseDTO>> results = callConcurrently(callers, "Atlantis", release);
+
+        for (Future<WeatherResponseDTO> result : results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(CityNotFoundException.class, exception.getCause());
+        }
+        upstream.verify();
+    }
+
+    @Test
+    void fetchWeatherData_InteractiveMissDoesNotJoinBackgroundCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        upstream.expect(times(2), requestTo(startsWith("http://test.com"))).andRespond(request -> {
+            if (calls.incrementAndGet() == 1) {
+                awaitQuietly(release);
+            }
+            return withSuccess("""
+                    {"weather": [{"description": "clear sky"}], "main": {"temp": 21.0, "humidity": 40},
+                     "wind": {"speed": 2.5}, "name": "Tehran", "cod": 200}
+                    """, MediaType.APPLICATION_JSON).createResponse(request);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<WeatherResponseDTO> background = executor.submit(
+                    () -> weatherService.fetchWeatherData("Tehran", UpstreamPriority.BACKGROUND));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (calls.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertNotNull(weatherService.fetchWeatherData("Tehran", UpstreamPriority.INTERACTIVE),
+                    "answered while the background call is still waiting");
+            assertFalse(background.isDone());
+            release.countDown();
+            assertNotNull(background.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_MissRightAfterAnUpstreamCallReadsTheCachedResult() throws Exception {
+        upstream.expect(once(), requestTo(startsWith("http://test.com"))).andRespond(withSuccess("""
+                {"weather": [{"description": "clear sky"}], "main": {"temp": 21.0, "humidity": 40},
+                 "wind": {"speed": 2.5}, "name": "Tehran", "cod": 200}
+                """, MediaType.APPLICATION_JSON));
+        CountDownLatch storing = new CountDownLatch(1);
+        // a put that takes a while widens the window between the upstream call returning and the entry being stored
+        CacheManager cacheManager = slowPutCacheManager(new CaffeineCacheManager(CacheConfiguration.WEATHER_CACHE), storing);
+
+        try (AnnotationConfigApplicationContext context = cachingContext(cacheManager)) {
+            WeatherService cached = context.getBean(WeatherService.class);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<WeatherResponseDTO> first = executor.submit(() -> cached.getWeatherData("Tehran"));
+                upstream.verify(Duration.ofSeconds(5));
+                storing.await(200, TimeUnit.MILLISECONDS);
+                Future<WeatherResponseDTO> second = executor.submit(() -> cached.getWeatherData("Tehran"));
+
+                assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        upstream.verify();
+    }
+
+    @Test
+    void getWeatherData_NestedValuesAreNotReadAsFields() {
+        upstream.expect(requestTo(startsWith("http://test.com"))).andRespond(withSuccess("""
+                {"name": {"cod": 404, "name": "Nowhere"}, "cod": 200, "message": ["not", {"cod": 500}],
+                 "main": {"temp": {"temp": -99.0}, "humidity": 40, "feels_like": 20.5},
+                 "wind": {"speed": [{"speed": 99.0}], "deg": 240},
+                 "weather": [{"description": {"description": "wrong"}, "main": "Clear"}]}
+                """, MediaType.APPLICATION_JSON));
+
+        WeatherResponseDTO result = weatherService.getWeatherData("Tehran");
+
+        assertEquals("Tehran", result.getCityName());
+        assertEquals(0.0, result.getTemperature());
+        assertEquals(40, result.getHumidity());
+        assertEquals(0.0, result.getWindSpeed());
+        assertEquals("N/A", result.getDescription());
+    }
+
+    @Test
+    void getWeatherData_MissingWeatherArray() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withSuccess("""
+                        {"main": {"temp": 3.5, "humidity": 90}, "wind": {"speed": 7.0}, "name": "Oslo", "cod": 200}
+                        """, MediaType.APPLICATION_JSON));
+
+        WeatherResponseDTO result = weatherService.getWeatherData("Oslo");
+
+        assertEquals("N/A", result.getDescription());
+        assertEquals(3.5, result.getTemperature());
+        assertEquals(90, result.getHumidity());
+        assertEquals(7.0, result.getWindSpeed());
+    }
+
+    @Test
+    void getWeatherData_MalformedJson() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withSuccess("{\"cod\": 200, \"main\": {", MediaType.APPLICATION_JSON));
+
+        ExternalApiException exception = assertThrows(ExternalApiException.class, () -> weatherService.getWeatherData("Oslo"));
+
+        assertTrue(exception.getMessage().contains("Failed to parse"));
+    }
+
+    @Test
+    void getWeatherData_RepeatedServerErrors_OpenCircuitAndFailFast() {
+        upstream.expect(times(4), requestTo(startsWith("http://test.com")))
+                .andRespond(withServerError());
+        for (String city : List.of("Oslo", "Bergen", "Tromso", "Stavanger")) {
+            assertThrows(ExternalApiException.class, () -> weatherService.getWeatherData(city));
+        }
+
+        assertThrows(UpstreamUnavailableException.class, () -> weatherService.getWeatherData("Trondheim"));
+        upstream.verify();
+        assertEquals(1.0, meterRegistry.get("weather.upstream.circuit.state").tag("state", "open").gauge().value());
+    }
+
+    @Test
+    void getWeatherData_TooManyRequests_BacksOffRateLimiter() {
+        upstream.expect(requestTo(startsWith("http://test.com")))
+                .andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+
+        ExternalApiException exception = assertThrows(ExternalApiException.class, () -> weatherService.getWeatherData("Oslo"));
+
+        assertTrue(exception.getMessage().contains("quota"));
+        assertTrue(meterRegistry.get("weather.upstream.ratelimit.tokens").gauge().value() < 1);
+        assertEquals(1, meterRegistry.get("weather.upstream.requests").tag("outcome", "rate_limited").timer().count());
+    }
+
+    private AnnotationConfigApplicationContext cachingContext(CacheManager cacheManager) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(CachingConfiguration.class);
+        context.registerBean("cacheManager", CacheManager.class, () -> cacheManager);
+        context.registerBean("cityKeyGenerator", CityKeyGenerator.class, () -> cityKeys);
+        context.registerBean("clusterCacheResolver", ClusterCacheResolver.class, () -> new ClusterCacheResolver(cacheManager, clusterRouting));
+        context.registerBean("weatherService", WeatherService.class, () -> weatherService);
+        context.refresh();
+        return context;
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingConfiguration {
+    }
+
+    /**
+     * Delays every put by 300 ms and counts down {@code storing} when one starts.
+     */
+    private static CacheManager slowPutCacheManager(CacheManager delegate, CountDownLatch storing) {
+        return new CacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                Cache cache = delegate.getCache(name);
+                return cache == null ? null : new SlowPutCache(cache, storing);
+            }
+
+            @Override
+            public Collection<String> getCacheNames() {
+                return delegate.getCacheNames();
+            }
+        };
+    }
+
+    private record SlowPutCache(Cache delegate, CountDownLatch storing) implements Cache {
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return delegate.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return delegate.get(key, type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return delegate.get(key, valueLoader);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            storing.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delegate.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            delegate.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+    }
+
+    /**
+     * Starts {@code callers} threads asking for the same city and opens {@code release} only once all of
+     * them are parked, either on the upstream call itself or on the call they joined.
+     */
+    private List<Future<WeatherResponseDTO>> callConcurrently(int callers, String city, CountDownLatch release)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Thread> threads = new ArrayList<>();
+        List<Future<WeatherResponseDTO>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    return weatherService.getWeatherData(city);
+                }));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!allWaiting(threads, callers) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean allWaiting(List<Thread> threads, int expected) {
+        synchronized (threads) {
+            return threads.size() == expected
+                    && threads.stream().allMatch(t -> t.getState() == Thread.State.WAITING || t.getState() == Thread.State.TIMED_WAITING);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package org.mhh.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mhh.cache.CityKeyGenerator;
+import org.mhh.cache.WeatherFreshness;
+import org.mhh.config.ServingThreads;
+import org.mhh.dto.WeatherResponseDTO;
+import org.mhh.exception.InvalidInputException;
+import org.mhh.gazetteer.CityGazetteer;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WeatherSubscriptionServiceImplTest {
+
+    private final WeatherService weatherService = mock(WeatherService.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Queue<SseEmitter> emitters = new ConcurrentLinkedQueue<>();
+    private WeatherSubscriptionServiceImpl subscriptions;
+
+    @AfterEach
+    void tearDown() {
+        subscriptions.close();
+    }
+
+    @Test
+    void subscribe_SharesOnePollPerCityAndPushesOnlyChanges() throws Exception {
+        when(weatherService.getWeatherData("Tehran"))
+                .thenReturn(weather(20.0, Instant.now()))
+                .thenReturn(weather(20.0, Instant.now().plusSeconds(60)))
+                .thenReturn(weather(22.5, Instant.now().plusSeconds(120)));
+        subscriptions = subscriptions(Duration.ofMillis(50));
+
+        RecordingEmitter first = (RecordingEmitter) subscriptions.subscribe(List.of("Tehran"));
+        RecordingEmitter second = (RecordingEmitter) subscriptions.subscribe(List.of(" teheran ", "TEHRAN"));
+
+        await(() -> first.events.size() == 2 && second.events.size() == 2);
+        assertEquals(1, subscriptions.subscribedCities());
+        assertTrue(first.events.get(0).contains("\"temperature\":20.0"), first.events::toString);
+        assertTrue(first.events.get(1).contains("\"temperature\":22.5"), first.events::toString);
+        assertEquals(first.events, second.events);
+
+        // nothing changes any more, so later polls push nothing
+        Thread.sleep(200);
+        assertEquals(2, first.events.size());
+    }
+
+    @Test
+    void subscribe_StopsPollingCityOnceLastSubscriberIsGone() throws Exception {
+        when(weatherService.getWeatherData(anyString())).thenAnswer(invocation -> weather(Math.random(), Instant.now()));
+        subscriptions = subscriptions(Duration.ofMillis(20));
+
+        RecordingEmitter leaving = (RecordingEmitter) subscriptions.subscribe(List.of("Tehran", "Paris"));
+        RecordingEmitter staying = (RecordingEmitter) subscriptions.subscribe(List.of("Paris"));
+        await(() -> !leaving.events.isEmpty() && !staying.events.isEmpty());
+        leaving.disconnected = true;
+
+        await(() -> subscriptions.subscribedCities() == 1);
+        clearInvocations(weatherService);
+        Thread.sleep(100);
+        verify(weatherService, never()).getWeatherData("Tehran");
+        verify(weatherService, atLeastOnce()).getWeatherData("Paris");
+    }
+
+    @Test
+    void subscribe_ReportsPerCityErrorsAndRejectsEmptyRequests() throws Exception {
+        when(weatherService.getWeatherData("Atlantis")).thenThrow(new org.mhh.exception.CityNotFoundException("Atlantis"));
+        subscriptions = subscriptions(Duration.ofMillis(50));
+
+        RecordingEmitter emitter = (RecordingEmitter) subscriptions.subscribe(List.of("Atlantis"));
+
+        await(() -> !emitter.events.isEmpty());
+        assertTrue(emitter.events.get(0).contains("\"status\":404"), emitter.events::toString);
+        assertThrows(InvalidInputException.class, () -> subscriptions.subscribe(List.of(" ", ",")));
+    }
+
+    @Test
+    void subscribe_SlowClientDoesNotDelayOtherSubscribers() throws Exception {
+        when(weatherService.getWeatherData(anyString())).thenAnswer(invocation -> weather(Math.random(), Instant.now()));
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(items);
+            }
+        };
+        emitters.add(slow);
+        subscriptions = subscriptions(Duration.ofMillis(10));
+
+        subscriptions.subscribe(List.of("Tehran"));
+        RecordingEmitter fast = (RecordingEmitter) subscriptions.subscribe(List.of("Tehran"));
+
+        await(() -> fast.events.size() >= 5);
+        assertTrue(slow.events.isEmpty());
+        unblock.countDown();
+    }
+
+    private WeatherSubscriptionServiceImpl subscriptions(Duration pollInterval) {
+        return new WeatherSubscriptionServiceImpl(weatherService, new WeatherFreshness(false, Duration.ofMinutes(2)),
+                new CityKeyGenerator(new CityGazetteer(new ClassPathResource("cities.tsv"))), objectMapper,
+                new SimpleMeterRegistry(), new ServingThreads(false), 20, pollInterval, Duration.ofHours(1), Duration.ofMinutes(30), 2) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                SseEmitter prepared = emitters.poll();
+                return prepared != null ? prepared : new RecordingEmitter();
+            }
+        };
+    }
+
+    private static WeatherResponseDTO weather(double temperature, Instant fetchedAt) {
+        return new WeatherResponseDTO("Tehran", temperature, "clear sky", 20, 2.0, fetchedAt, false);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile boolean disconnected;
+
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            StringBuilder event = new StringBuilder();
+            items.forEach(item -> event.append(item.getData()));
+            events.add(event.toString());
+        }
+    }
+}
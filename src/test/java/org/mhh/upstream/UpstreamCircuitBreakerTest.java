@@ -0,0 +1,105 @@
+package org.mhh.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mhh.exception.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamCircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(3);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker(meterRegistry,
+            10, 4, 50, Duration.ofSeconds(2), 75, Duration.ofMillis(100), 2);
+
+    @Test
+    void opensOnFailureRateAndRecoversThroughHalfOpenProbes() throws InterruptedException {
+        call(FAST, false);
+        call(FAST, true);
+        call(FAST, false);
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState(), "below minimum-calls");
+        call(FAST, true);
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+
+        assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission);
+        assertEquals(1.0, meterRegistry.get("weather.upstream.circuit.rejected").counter().count());
+
+        Thread.sleep(150);
+        long firstProbe = breaker.acquirePermission();
+        long secondProbe = breaker.acquirePermission();
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission, "only two probes at a time");
+        breaker.onResult(firstProbe, FAST, false);
+        breaker.onResult(secondProbe, FAST, false);
+
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1.0, meterRegistry.get("weather.upstream.circuit.state").tag("state", "closed").gauge().value());
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        call(SLOW, false);
+        call(SLOW, false);
+        call(FAST, false);
+        call(SLOW, false);
+
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void failedProbeReopensBreaker() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            call(FAST, true);
+        }
+        Thread.sleep(150);
+
+        call(SLOW, false);
+
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission);
+    }
+
+    @Test
+    void onlyTheRollingWindowCounts() {
+        for (int i = 0; i < 20; i++) {
+            call(FAST, false);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(FAST, true);
+        }
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState(), "4 of the last 10 calls failed");
+
+        call(FAST, true);
+
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState(), "5 of the last 10 calls failed");
+    }
+
+    @Test
+    void callAdmittedWhileClosedIsNotCountedAsProbe() throws InterruptedException {
+        long admittedWhileClosed = breaker.acquirePermission();
+        for (int i = 0; i < 4; i++) {
+            call(FAST, true);
+        }
+        Thread.sleep(150);
+        long probe = breaker.acquirePermission();
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onResult(admittedWhileClosed, SLOW, true);
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState(), "a late result must not reopen the breaker");
+
+        breaker.onResult(probe, FAST, false);
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState(), "one of two probes succeeded");
+        call(FAST, false);
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private void call(long durationNanos, boolean failed) {
+        breaker.onResult(breaker.acquirePermission(), durationNanos, failed);
+    }
+}
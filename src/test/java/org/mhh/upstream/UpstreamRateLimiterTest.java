@@ -0,0 +1,91 @@
+package org.mhh.upstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mhh.exception.UpstreamRateLimitedException;
+import org.mhh.exception.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void acquire_AllowsBurstThenRejectsWhenWaitIsTooLong() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(meterRegistry, 1, 3, 10, Duration.ofMillis(50), Duration.ofMillis(50));
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(UpstreamPriority.INTERACTIVE);
+        }
+        long start = System.nanoTime();
+        UpstreamRateLimitedException rejection = assertThrows(UpstreamRateLimitedException.class,
+                () -> limiter.acquire(UpstreamPriority.INTERACTIVE));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000, "rejection must not wait for a token");
+        assertEquals(Duration.ofMinutes(1), rejection.getRetryAfter().withNanos(0));
+        assertEquals(1.0, meterRegistry.get("weather.upstream.ratelimit.rejected").tag("priority", "interactive").counter().count());
+        assertTrue(meterRegistry.get("weather.upstream.ratelimit.tokens").gauge().value() < 1);
+    }
+
+    @Test
+    void acquire_RejectsImmediatelyWhenQueueIsFull() {
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(meterRegistry, 1, 1, 0, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        limiter.acquire(UpstreamPriority.BACKGROUND);
+
+        long start = System.nanoTime();
+        assertThrows(UpstreamRateLimitedException.class, () -> limiter.acquire(UpstreamPriority.BACKGROUND));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    void acquire_ServesInteractiveCallsBeforeBackgroundCalls() throws Exception {
+        // one token every 200 ms
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(meterRegistry, 300, 1, 10, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        limiter.acquire(UpstreamPriority.INTERACTIVE);
+        List<UpstreamPriority> served = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> background = CompletableFuture.runAsync(() -> {
+            limiter.acquire(UpstreamPriority.BACKGROUND);
+            served.add(UpstreamPriority.BACKGROUND);
+        });
+        awaitQueueDepth(limiter, UpstreamPriority.BACKGROUND);
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> {
+            limiter.acquire(UpstreamPriority.INTERACTIVE);
+            served.add(UpstreamPriority.INTERACTIVE);
+        });
+        awaitQueueDepth(limiter, UpstreamPriority.INTERACTIVE);
+        assertEquals(1.0, meterRegistry.get("weather.upstream.ratelimit.queue").tag("priority", "background").gauge().value());
+
+        CompletableFuture.allOf(background, interactive).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(UpstreamPriority.INTERACTIVE, UpstreamPriority.BACKGROUND), served);
+    }
+
+    @Test
+    void guard_GivesTokenBackWhenBulkheadRejectsTheCall() {
+        // one token a minute, so only a returned token can still be there
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(meterRegistry, 1, 1, 10, Duration.ofMillis(50), Duration.ofMillis(50));
+        UpstreamGuard guard = new UpstreamGuard(
+                new UpstreamCircuitBreaker(meterRegistry, 4, 4, 50, Duration.ofSeconds(2), 80, Duration.ofMinutes(1), 1),
+                limiter, new UpstreamBulkhead(meterRegistry, 0, Duration.ofMillis(10)));
+
+        assertThrows(UpstreamUnavailableException.class, () -> guard.call(UpstreamPriority.INTERACTIVE, () -> "sunny", e -> true));
+
+        assertTrue(limiter.availableTokens() >= 1, "a call rejected by the bulkhead must not use up request quota");
+        assertEquals(1.0, meterRegistry.get("weather.upstream.bulkhead.rejected").counter().count());
+    }
+
+    private void awaitQueueDepth(UpstreamRateLimiter limiter, UpstreamPriority priority) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (limiter.queueDepth(priority) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, limiter.queueDepth(priority));
+    }
+}